@@ -0,0 +1,205 @@
+import java.util.Arrays;
+/**
+ * A reusable bidirectional breadth-first search engine.  A query grows one
+ * search tree forward from the source over out-links and another backward
+ * from the target over in-links, one whole level at a time, always expanding
+ * whichever side has the smaller frontier.  The search stops at the first
+ * level in which the two trees touch; on a small-world graph this explores
+ * far fewer vertices than a one-sided search, while still finding a shortest
+ * path.
+ *   As with BreadthFirstSearch, all search state lives in int arrays reused
+ * between queries, and an engine is not safe for use by more than one thread
+ * at a time.
+ *
+ * @author Yitong Chen
+ * @author Anton Nagy
+ */
+public class BidirectionalSearch {
+    // The graph being searched.
+    private final Graph graph;
+
+    // Each side's queue holds every vertex that side has visited, in order of
+    // discovery, so each level is a contiguous run of the queue.
+    private int[] forwardQueue;
+    private int[] backwardQueue;
+
+    // forwardLink[v] is the vertex from which the forward search discovered
+    // v, i.e., v's predecessor on a path from the source.  backwardLink[v] is
+    // v's successor on a path to the target.
+    private int[] forwardLink;
+    private int[] backwardLink;
+
+    // Epoch stamps marking the vertices each side visited in this query.
+    private int[] forwardVisited;
+    private int[] backwardVisited;
+    private int epoch;
+
+    // Scratch array each vertex's neighbors are copied into.
+    private int[] neighborBuffer;
+
+    /**
+    * Constructs a search engine for the given graph.
+    * @param graph the graph to search
+    */
+    public BidirectionalSearch(Graph graph) {
+        this.graph = graph;
+        forwardQueue = new int[0];
+        backwardQueue = new int[0];
+        forwardLink = new int[0];
+        backwardLink = new int[0];
+        forwardVisited = new int[0];
+        backwardVisited = new int[0];
+        neighborBuffer = new int[0];
+        epoch = 0;
+    }
+
+    /**
+    * Returns the vertex IDs on a shortest path from source to target, with source
+    * at position 0 and target in the final position. If source and target are the
+    * same, the path is just that vertex. If no path exists, returns an empty array.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return IDs of the vertices on the shortest path
+    */
+    public int[] shortestPath(int source, int target) {
+        int n = graph.numVerts();
+        if (source < 0 || source >= n || target < 0 || target >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (source == target) {
+            return new int[] {source};
+        }
+        int meeting = search(source, target);
+        if (meeting < 0) {
+            return new int[0];
+        }
+
+        // Counts the hops on each side of the meeting vertex, then walks the
+        // forward links back to the source and the backward links on to the target.
+        int before = 0;
+        for (int v = meeting; v != source; v = forwardLink[v]) {
+            before ++;
+        }
+        int after = 0;
+        for (int v = meeting; v != target; v = backwardLink[v]) {
+            after ++;
+        }
+        int[] path = new int[before + after + 1];
+        int v = meeting;
+        for (int i = before; i >= 0; i --) {
+            path[i] = v;
+            v = forwardLink[v];
+        }
+        v = meeting;
+        for (int i = before; i < path.length; i ++) {
+            path[i] = v;
+            v = backwardLink[v];
+        }
+        return path;
+    }
+
+    /**
+    * Returns the number of edges on a shortest path from source to target, 0 if
+    * they are the same vertex, or -1 if no path exists.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return length of shortest path
+    */
+    public int shortestPathLength(int source, int target) {
+        return shortestPath(source, target).length - 1;
+    }
+
+    // Runs the two searches until they meet.  Returns a vertex visited by
+    // both, or -1 if either side runs out of vertices first.
+    //   If the searches have not met after the forward side has explored
+    // every vertex within distance f and the backward side every vertex
+    // within distance b, the shortest path has length at least f + b + 1.
+    // Any vertex the next level discovers that the other side already
+    // visited is therefore exactly that far along a shortest path, so it is
+    // safe to stop at the first one.
+    private int search(int source, int target) {
+        startQuery();
+        int forwardHead = 0;
+        int forwardTail = 0;
+        int backwardHead = 0;
+        int backwardTail = 0;
+        forwardVisited[source] = epoch;
+        forwardQueue[forwardTail ++] = source;
+        backwardVisited[target] = epoch;
+        backwardQueue[backwardTail ++] = target;
+
+        while (forwardHead < forwardTail && backwardHead < backwardTail) {
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                int levelEnd = forwardTail;
+                while (forwardHead < levelEnd) {
+                    int u = forwardQueue[forwardHead ++];
+                    int degree = copyNeighbors(u, false);
+                    for (int i = 0; i < degree; i ++) {
+                        int w = neighborBuffer[i];
+                        if (forwardVisited[w] != epoch) {
+                            forwardVisited[w] = epoch;
+                            forwardLink[w] = u;
+                            if (backwardVisited[w] == epoch) {
+                                return w;
+                            }
+                            forwardQueue[forwardTail ++] = w;
+                        }
+                    }
+                }
+            } else {
+                int levelEnd = backwardTail;
+                while (backwardHead < levelEnd) {
+                    int u = backwardQueue[backwardHead ++];
+                    int degree = copyNeighbors(u, true);
+                    for (int i = 0; i < degree; i ++) {
+                        int w = neighborBuffer[i];
+                        if (backwardVisited[w] != epoch) {
+                            backwardVisited[w] = epoch;
+                            backwardLink[w] = u;
+                            if (forwardVisited[w] == epoch) {
+                                return w;
+                            }
+                            backwardQueue[backwardTail ++] = w;
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Copies the out-neighbors of v, or its in-neighbors if incoming is true,
+    // into the scratch array, growing it if needed.
+    private int copyNeighbors(int v, boolean incoming) {
+        int degree = incoming ? graph.getInDegree(v) : graph.getDegree(v);
+        if (neighborBuffer.length < degree) {
+            neighborBuffer = new int[degree];
+        }
+        if (incoming) {
+            return graph.copyInNeighbors(v, neighborBuffer);
+        }
+        return graph.copyNeighbors(v, neighborBuffer);
+    }
+
+    // Grows the arrays if the graph has grown, and moves on to a fresh epoch so
+    // that nothing from earlier queries counts as visited.
+    private void startQuery() {
+        int n = graph.numVerts();
+        if (forwardVisited.length < n) {
+            forwardQueue = new int[n];
+            backwardQueue = new int[n];
+            forwardLink = new int[n];
+            backwardLink = new int[n];
+            forwardVisited = new int[n];
+            backwardVisited = new int[n];
+            epoch = 0;
+        }
+        epoch ++;
+        if (epoch == Integer.MAX_VALUE) {
+            // Stamps from 2^31 queries ago would look current; start over.
+            Arrays.fill(forwardVisited, 0);
+            Arrays.fill(backwardVisited, 0);
+            epoch = 1;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+/**
+ * A reusable breadth-first search engine over a Graph.  All of the search
+ * state lives in int arrays that are allocated once and kept between queries,
+ * so a query costs time proportional to the part of the graph it explores
+ * rather than to the size of the graph.
+ *   Visited vertices are tracked by stamping them with the current query's
+ * epoch number; starting a new query just bumps the epoch instead of clearing
+ * the array.
+ *   A BreadthFirstSearch is not safe for use by more than one thread at a
+ * time.  If the graph gains vertices between queries, the arrays grow to
+ * match on the next query.
+ *
+ * @author Yitong Chen
+ * @author Anton Nagy
+ */
+public class BreadthFirstSearch {
+    // The graph being searched.
+    private final Graph graph;
+
+    // Vertices waiting to be expanded.  Each vertex is enqueued at most once
+    // per query, so N slots are enough and the queue never has to wrap.
+    private int[] queue;
+
+    // predecessor[v] is the vertex from which v was discovered; only
+    // meaningful if v was visited in the current query.
+    private int[] predecessor;
+
+    // visited[v] == epoch if and only if v was visited in the current query.
+    private int[] visited;
+    private int epoch;
+
+    // Scratch array each vertex's neighbors are copied into.
+    private int[] neighborBuffer;
+
+    /**
+    * Constructs a search engine for the given graph.
+    * @param graph the graph to search
+    */
+    public BreadthFirstSearch(Graph graph) {
+        this.graph = graph;
+        queue = new int[0];
+        predecessor = new int[0];
+        visited = new int[0];
+        neighborBuffer = new int[0];
+        epoch = 0;
+    }
+
+    /**
+    * Returns the vertex IDs on a shortest path from source to target, with source
+    * at position 0 and target in the final position. If source and target are the
+    * same, the path is just that vertex. If no path exists, returns an empty array.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return IDs of the vertices on the shortest path
+    */
+    public int[] shortestPath(int source, int target) {
+        int n = graph.numVerts();
+        if (source < 0 || source >= n || target < 0 || target >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (source == target) {
+            return new int[] {source};
+        }
+        if (!search(source, target)) {
+            return new int[0];
+        }
+
+        // Counts the hops back to the source, then fills the path from the end.
+        int length = 0;
+        for (int v = target; v != source; v = predecessor[v]) {
+            length ++;
+        }
+        int[] path = new int[length + 1];
+        int v = target;
+        for (int i = length; i >= 0; i --) {
+            path[i] = v;
+            v = predecessor[v];
+        }
+        return path;
+    }
+
+    /**
+    * Returns the number of edges on a shortest path from source to target, 0 if
+    * they are the same vertex, or -1 if no path exists.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return length of shortest path
+    */
+    public int shortestPathLength(int source, int target) {
+        return shortestPath(source, target).length - 1;
+    }
+
+    /**
+    * Runs a breadth-first search over the whole graph from source and returns the
+    * resulting tree, which can answer shortest-path queries to any target. The
+    * tree gets its own distance and predecessor arrays; only the queue is shared
+    * with other queries.
+    * @param source ID of the starting vertex
+    * @return the shortest-path tree rooted at source
+    */
+    public ShortestPathTree shortestPathTree(int source) {
+        return growTree(source, false);
+    }
+
+    /**
+    * Runs a breadth-first search over the in-links of the whole graph from target
+    * and returns the resulting reversed tree, which can answer shortest-path
+    * queries from any source to target. In an undirected graph this finds the
+    * same distances as shortestPathTree(target).
+    * @param target ID of the ending vertex
+    * @return the reversed shortest-path tree rooted at target
+    */
+    public ShortestPathTree reverseShortestPathTree(int target) {
+        return growTree(target, true);
+    }
+
+    // Grows a full shortest-path tree from root, following out-links, or
+    // in-links if reversed is true.
+    private ShortestPathTree growTree(int root, boolean reversed) {
+        int n = graph.numVerts();
+        if (root < 0 || root >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+        startQuery();
+        int[] distance = new int[n];
+        int[] parent = new int[n];
+        Arrays.fill(distance, -1);
+        parent[root] = -1;
+        distance[root] = 0;
+
+        int head = 0;
+        int tail = 0;
+        queue[tail ++] = root;
+        while (head < tail) {
+            int frontVertex = queue[head ++];
+            int degree = reversed ? graph.getInDegree(frontVertex) : graph.getDegree(frontVertex);
+            if (neighborBuffer.length < degree) {
+                neighborBuffer = new int[degree];
+            }
+            if (reversed) {
+                graph.copyInNeighbors(frontVertex, neighborBuffer);
+            } else {
+                graph.copyNeighbors(frontVertex, neighborBuffer);
+            }
+
+            for (int i = 0; i < degree; i ++) {
+                int nextNeighbor = neighborBuffer[i];
+                if (distance[nextNeighbor] < 0) {
+                    distance[nextNeighbor] = distance[frontVertex] + 1;
+                    parent[nextNeighbor] = frontVertex;
+                    queue[tail ++] = nextNeighbor;
+                }
+            }
+        }
+        return new ShortestPathTree(root, reversed, distance, parent);
+    }
+
+    // Runs a breadth-first search from source, stopping as soon as target is
+    // discovered.  Returns true if target was reached; the predecessor array
+    // then holds a shortest-path tree back to source.
+    private boolean search(int source, int target) {
+        startQuery();
+        int head = 0;
+        int tail = 0;
+        visited[source] = epoch;
+        queue[tail ++] = source;
+
+        while (head < tail) {
+            int frontVertex = queue[head ++];
+            int degree = graph.getDegree(frontVertex);
+            if (neighborBuffer.length < degree) {
+                neighborBuffer = new int[degree];
+            }
+            graph.copyNeighbors(frontVertex, neighborBuffer);
+
+            for (int i = 0; i < degree; i ++) {
+                int nextNeighbor = neighborBuffer[i];
+                if (visited[nextNeighbor] != epoch) {
+                    visited[nextNeighbor] = epoch;
+                    predecessor[nextNeighbor] = frontVertex;
+                    if (nextNeighbor == target) {
+                        return true;
+                    }
+                    queue[tail ++] = nextNeighbor;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Grows the arrays if the graph has grown, and moves on to a fresh epoch so
+    // that nothing from earlier queries counts as visited.
+    private void startQuery() {
+        int n = graph.numVerts();
+        if (visited.length < n) {
+            queue = new int[n];
+            predecessor = new int[n];
+            visited = new int[n];
+            epoch = 0;
+        }
+        epoch ++;
+        if (epoch == Integer.MAX_VALUE) {
+            // Stamps from 2^31 queries ago would look current; start over.
+            Arrays.fill(visited, 0);
+            epoch = 1;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* ConcurrentPathQueryEngine answers the same shortest-path queries as PathFinder,
+* but may be shared freely by any number of threads.
+*
+* The engine works over a graph that must never change while it is in use, such
+* as a CsrUnweightedGraph, a MappedCsrGraph or a frozen OverlayGraph, and over
+* its own copy of the node names, so the only mutable state is the search
+* engines' scratch arrays. The engine keeps a small pool of idle search engines of
+* each kind: a query borrows one for its duration and then returns it, so their
+* arrays are reused however many threads come and go, as with a new virtual
+* thread per request. The pools are lock-free, and a query that finds one empty
+* builds a fresh search engine rather than waiting, so threads never wait for one
+* another and throughput grows with the number of cores; at most one idle engine
+* per core of each kind is kept.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class ConcurrentPathQueryEngine {
+    // The frozen graph.
+    private final Graph graph;
+
+    // The name of each node, by ID, and the ID of each name.
+    private final LabelDictionary labels;
+
+    // The algorithm used for every query.
+    private final PathFinder.SearchMode searchMode;
+
+    // The index that answers length queries, or null to search for them.
+    private final DistanceOracle distanceOracle;
+
+    // Idle search engines of each kind, borrowed by one query at a time.
+    private final EnginePool<BreadthFirstSearch> breadthFirstSearches;
+    private final EnginePool<BidirectionalSearch> bidirectionalSearches;
+    private final EnginePool<DirectionOptimizingSearch> directionOptimizingSearches;
+    private final EnginePool<DistanceSearch> distanceSearches;
+    private final EnginePool<LandmarkSearch> landmarkSearches;
+
+    /**
+    * Constructs an engine over a graph that will not change while the engine is in
+    * use.
+    * @param graph the graph, which must not be modified afterwards
+    * @param names the name of each node, in ID order
+    * @param searchMode the algorithm to use for every query
+    */
+    public ConcurrentPathQueryEngine(final Graph graph, List<String> names,
+                                     PathFinder.SearchMode searchMode) {
+        this(graph, names, searchMode, null);
+    }
+
+    /**
+    * Constructs an engine over a graph that will not change while the engine is in
+    * use, which answers length queries from a distance oracle, such as a
+    * HubLabelIndex, instead of searching. Paths are still found by searching.
+    * @param graph the graph, which must not be modified afterwards
+    * @param names the name of each node, in ID order
+    * @param searchMode the algorithm to use for every path query
+    * @param distanceOracle an oracle built for the graph that may be read from
+    *                       many threads at once, or null
+    */
+    public ConcurrentPathQueryEngine(final Graph graph, List<String> names,
+                                     PathFinder.SearchMode searchMode,
+                                     DistanceOracle distanceOracle) {
+        this(graph, new LabelDictionary(names), searchMode, distanceOracle, null);
+    }
+
+    // Constructs an engine that takes over the given dictionary, which must
+    // not be modified afterwards; unlike a list of names, it can leave out
+    // names that were removed. In LANDMARK_ASTAR mode, the engine uses the
+    // given landmark bounds, which must not be repaired afterwards, or builds
+    // its own if there are none.
+    ConcurrentPathQueryEngine(final Graph graph, LabelDictionary labels,
+                              PathFinder.SearchMode searchMode,
+                              DistanceOracle distanceOracle, LandmarkOracle landmarkOracle) {
+        if (labels.size() != graph.numVerts()) {
+            throw new IllegalArgumentException("Expected " + graph.numVerts()
+                                               + " names, got " + labels.size());
+        }
+        this.graph = graph;
+        this.labels = labels;
+        this.searchMode = searchMode;
+        if (distanceOracle != null && distanceOracle.numVerts() != graph.numVerts()) {
+            throw new IllegalArgumentException("Oracle covers " + distanceOracle.numVerts()
+                                               + " nodes, graph has " + graph.numVerts());
+        }
+        this.distanceOracle = distanceOracle;
+        int capacity = Runtime.getRuntime().availableProcessors();
+        breadthFirstSearches = new EnginePool<BreadthFirstSearch>(capacity) {
+            BreadthFirstSearch create() {
+                return new BreadthFirstSearch(graph);
+            }
+        };
+        bidirectionalSearches = new EnginePool<BidirectionalSearch>(capacity) {
+            BidirectionalSearch create() {
+                return new BidirectionalSearch(graph);
+            }
+        };
+        directionOptimizingSearches = new EnginePool<DirectionOptimizingSearch>(capacity) {
+            DirectionOptimizingSearch create() {
+                return new DirectionOptimizingSearch(graph);
+            }
+        };
+        // All queries share one set of landmark bounds.
+        if (landmarkOracle == null && searchMode == PathFinder.SearchMode.LANDMARK_ASTAR) {
+            landmarkOracle = new LandmarkOracle(graph, LandmarkOracle.DEFAULT_LANDMARKS);
+        }
+        if (landmarkOracle != null && landmarkOracle.numVerts() != graph.numVerts()) {
+            throw new IllegalArgumentException("Landmarks cover " + landmarkOracle.numVerts()
+                                               + " nodes, graph has " + graph.numVerts());
+        }
+        final LandmarkOracle landmarks = landmarkOracle;
+        landmarkSearches = new EnginePool<LandmarkSearch>(capacity) {
+            LandmarkSearch create() {
+                return new LandmarkSearch(graph, landmarks);
+            }
+        };
+        distanceSearches = new EnginePool<DistanceSearch>(capacity) {
+            DistanceSearch create() {
+                return new DistanceSearch(graph);
+            }
+        };
+    }
+
+    /**
+    * Returns the algorithm used for every query.
+    * @return the search mode
+    */
+    public PathFinder.SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    /**
+    * Returns true if the graph has a node with the given name.
+    * @param name name of an article node
+    * @return whether the node exists
+    */
+    public boolean hasNode(String name) {
+        return labels.contains(name);
+    }
+
+    /**
+    * Returns a shortest path from source to each of the given targets, in the same
+    * form as PathFinder.getShortestPaths(source, targets). A single breadth-first
+    * search from source serves every target.
+    * @param source name of the starting article node
+    * @param targets names of the ending article nodes
+    * @return one list of node names per target, in the order of targets
+    */
+    public List<List<String>> getShortestPaths(String source, List<String> targets) {
+        ShortestPathTree tree = shortestPathTree(labels.getId(source));
+        List<List<String>> paths = new ArrayList<List<String>>(targets.size());
+        for (String target : targets) {
+            paths.add(toNames(tree.getShortestPath(labels.getId(target))));
+        }
+        return paths;
+    }
+
+    /**
+    * Returns a shortest path from node1 to node2, in the same form as
+    * PathFinder.getShortestPath(node1, node2).
+    * @param node1 name of the starting article node
+    * @param node2 name of the ending article node
+    * @return list of the names of nodes on the shortest path
+    */
+    public List<String> getShortestPath(String node1, String node2) {
+        return toNames(shortestPath(labels.getId(node1), labels.getId(node2)));
+    }
+
+    /**
+    * Returns the length of the shortest path from node1 to node2, in the same form
+    * as PathFinder.getShortestPathLength(node1, node2).
+    * @param node1 name of the starting article node
+    * @param node2 name of the ending article node
+    * @return length of shortest path
+    */
+    public int getShortestPathLength(String node1, String node2) {
+        return distance(labels.getId(node1), labels.getId(node2));
+    }
+
+    /**
+    * Returns a shortest path from node1 to node2 through intermediateNode, in the
+    * same form as PathFinder.getShortestPath(node1, intermediateNode, node2).
+    * @param node1 name of the starting article node
+    * @param intermediateNode name of the article node the path must pass through
+    * @param node2 name of the ending article node
+    * @return list of the names of nodes on the path
+    */
+    public List<String> getShortestPath(String node1, String intermediateNode, String node2) {
+        int via = labels.getId(intermediateNode);
+        int[] firstHalf = shortestPath(labels.getId(node1), via);
+        int[] secondHalf = shortestPath(via, labels.getId(node2));
+        return toNames(joinPaths(firstHalf, secondHalf));
+    }
+
+    /**
+    * Returns a shortest path from source to each of the given targets through
+    * intermediateNode, in the same form as getShortestPath(node1,
+    * intermediateNode, node2). The path into intermediateNode is searched for once,
+    * and a single breadth-first search from intermediateNode serves every target.
+    * @param source name of the starting article node
+    * @param intermediateNode name of the article node every path must pass through
+    * @param targets names of the ending article nodes
+    * @return one list of node names per target, in the order of targets
+    */
+    public List<List<String>> getShortestPaths(String source, String intermediateNode,
+                                               List<String> targets) {
+        int via = labels.getId(intermediateNode);
+        int[] firstHalf = shortestPath(labels.getId(source), via);
+        ShortestPathTree outOf = shortestPathTree(via);
+        List<List<String>> paths = new ArrayList<List<String>>(targets.size());
+        for (String target : targets) {
+            paths.add(toNames(joinPaths(firstHalf, outOf.getShortestPath(labels.getId(target)))));
+        }
+        return paths;
+    }
+
+    /**
+    * Returns the length of the shortest path from node1 to node2 through
+    * intermediateNode, in the same form as
+    * PathFinder.getShortestPathLength(node1, intermediateNode, node2).
+    * @param node1 name of the starting article node
+    * @param intermediateNode name of the article node the path must pass through
+    * @param node2 name of the ending article node
+    * @return length of shortest path
+    */
+    public int getShortestPathLength(String node1, String intermediateNode, String node2) {
+        int via = labels.getId(intermediateNode);
+        int firstHalf = distance(labels.getId(node1), via);
+        int secondHalf = distance(via, labels.getId(node2));
+        if (firstHalf < 0 || secondHalf < 0) {
+            return -1;
+        }
+        return firstHalf + secondHalf;
+    }
+
+    // Grows a shortest-path tree from source with a borrowed engine.  The
+    // tree has arrays of its own, so the engine can go back at once.
+    private ShortestPathTree shortestPathTree(int source) {
+        BreadthFirstSearch search = breadthFirstSearches.borrow();
+        try {
+            return search.shortestPathTree(source);
+        } finally {
+            breadthFirstSearches.giveBack(search);
+        }
+    }
+
+    // Runs a query on a search engine borrowed for its duration.
+    private int[] shortestPath(int source, int target) {
+        if (searchMode == PathFinder.SearchMode.BIDIRECTIONAL) {
+            BidirectionalSearch search = bidirectionalSearches.borrow();
+            try {
+                return search.shortestPath(source, target);
+            } finally {
+                bidirectionalSearches.giveBack(search);
+            }
+        } else if (searchMode == PathFinder.SearchMode.DIRECTION_OPTIMIZING) {
+            DirectionOptimizingSearch search = directionOptimizingSearches.borrow();
+            try {
+                return search.shortestPath(source, target);
+            } finally {
+                directionOptimizingSearches.giveBack(search);
+            }
+        } else if (searchMode == PathFinder.SearchMode.LANDMARK_ASTAR) {
+            LandmarkSearch search = landmarkSearches.borrow();
+            try {
+                return search.shortestPath(source, target);
+            } finally {
+                landmarkSearches.giveBack(search);
+            }
+        }
+        BreadthFirstSearch search = breadthFirstSearches.borrow();
+        try {
+            return search.shortestPath(source, target);
+        } finally {
+            breadthFirstSearches.giveBack(search);
+        }
+    }
+
+    // Looks up a length in the oracle, if there is one, or else runs a
+    // length-only query on a borrowed search engine.
+    private int distance(int source, int target) {
+        if (distanceOracle != null) {
+            return distanceOracle.getDistance(source, target);
+        } else if (searchMode == PathFinder.SearchMode.DIRECTION_OPTIMIZING) {
+            DirectionOptimizingSearch search = directionOptimizingSearches.borrow();
+            try {
+                return search.shortestPathLength(source, target);
+            } finally {
+                directionOptimizingSearches.giveBack(search);
+            }
+        } else if (searchMode == PathFinder.SearchMode.LANDMARK_ASTAR) {
+            LandmarkSearch search = landmarkSearches.borrow();
+            try {
+                return search.shortestPathLength(source, target);
+            } finally {
+                landmarkSearches.giveBack(search);
+            }
+        }
+        DistanceSearch search = distanceSearches.borrow();
+        try {
+            if (searchMode == PathFinder.SearchMode.BIDIRECTIONAL) {
+                return search.bidirectionalDistance(source, target);
+            }
+            return search.distance(source, target);
+        } finally {
+            distanceSearches.giveBack(search);
+        }
+    }
+
+    // Joins a path into the intermediate node with a path out of it, or returns
+    // an empty path if either half is missing.
+    private static int[] joinPaths(int[] firstHalf, int[] secondHalf) {
+        if (firstHalf.length == 0 || secondHalf.length == 0) {
+            return new int[0];
+        }
+        int[] path = new int[firstHalf.length + secondHalf.length - 1];
+        System.arraycopy(firstHalf, 0, path, 0, firstHalf.length);
+        System.arraycopy(secondHalf, 1, path, firstHalf.length, secondHalf.length - 1);
+        return path;
+    }
+
+    // Converts a path from ID format to actual name format.
+    private List<String> toNames(int[] pathInt) {
+        List<String> path = new ArrayList<String>(pathInt.length);
+        for (int id : pathInt) {
+            path.add(labels.getName(id));
+        }
+        return path;
+    }
+
+    // A bounded stock of idle search engines of one kind.  Borrowing takes an
+    // idle engine, or builds a new one if there is none; giving back keeps
+    // the engine unless the stock is full, in which case it is dropped.  The
+    // queue and the count are both lock-free; a slot is counted before an
+    // engine goes in and after one comes out, so the queue never holds more
+    // than capacity engines.
+    private abstract static class EnginePool<T> {
+        private final ConcurrentLinkedQueue<T> idle;
+        private final AtomicInteger size;
+        private final int capacity;
+
+        EnginePool(int capacity) {
+            idle = new ConcurrentLinkedQueue<T>();
+            size = new AtomicInteger();
+            this.capacity = capacity;
+        }
+
+        // Builds a new engine.
+        abstract T create();
+
+        T borrow() {
+            T engine = idle.poll();
+            if (engine == null) {
+                return create();
+            }
+            size.decrementAndGet();
+            return engine;
+        }
+
+        void giveBack(T engine) {
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                return;
+            }
+            idle.offer(engine);
+        }
+    }
+}
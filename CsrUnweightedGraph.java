@@ -0,0 +1,345 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+/**
+ * An immutable implementation of the Unweighted Graph ADT in Compressed Sparse
+ * Row (CSR) form.  All edges live in a single int array, grouped by source
+ * vertex and sorted by target within each group; a second array of N+1
+ * offsets marks where each vertex's group begins.  Compared to a list of
+ * boxed Integer lists, this costs 4 bytes per edge and lets a traversal walk
+ * contiguous memory.
+ *   A directed graph also keeps the same structure for its transpose, so that
+ * in-neighbors and in-degrees are as cheap to read as out-neighbors and
+ * degrees.  In an undirected graph the two coincide and are shared.
+ *   Because the structure is packed, it cannot change: addVertex, addEdge,
+ * removeEdge, removeVertex and clear all throw
+ * UnsupportedOperationException.  Build the graph from edge arrays, or load a
+ * mutable graph first and copy it with the Graph constructor.
+ *   Any method that takes one or more vertex IDs as arguments may throw an
+ * IndexOutOfBoundsException if any input ID is out of bounds.
+ */
+public class CsrUnweightedGraph implements UnweightedGraph {
+    // offsets[v] is the index in targets of v's first neighbor, and
+    // offsets[v+1] is one past its last.  offsets has length N+1.
+    private final int[] offsets;
+    private final int[] targets;
+    // The same for in-links: sources[inOffsets[v]] through
+    // sources[inOffsets[v+1] - 1] are the in-neighbors of v, in sorted order.
+    private final int[] inOffsets;
+    private final int[] sources;
+    private final boolean undirected;
+    // The number of edges.  In an undirected graph each edge is stored in
+    // both directions except a self-loop, which is stored once and still
+    // counts as one edge.
+    private final int edgeCount;
+
+    /** Constructs a copy of the given graph, with the same vertex IDs, edges
+     * and directedness.
+     */
+    public CsrUnweightedGraph(Graph source) {
+        int n = source.numVerts();
+        undirected = !source.isDirected();
+        offsets = new int[n + 1];
+        for(int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + source.getDegree(v);
+        }
+        targets = new int[offsets[n]];
+        for(int v = 0; v < n; v++) {
+            int i = offsets[v];
+            for(int u : source.getNeighbors(v)) {
+                targets[i++] = u;
+            }
+            // The source is not obliged to iterate in sorted order.
+            Arrays.sort(targets, offsets[v], offsets[v + 1]);
+        }
+        inOffsets = undirected ? offsets : countInLinks(offsets, targets);
+        sources = undirected ? targets : collectInLinks(offsets, targets, inOffsets);
+        edgeCount = countEdges(undirected, offsets, targets);
+    }
+
+    /** Constructs a graph with N vertices from the first m entries of two
+     * parallel edge arrays: the i-th edge runs from begins[i] to ends[i].
+     * Duplicate edges are dropped.  In an undirected graph, each edge is
+     * stored in both directions.
+     * @throws IndexOutOfBoundsException if any vertex ID is out of bounds.
+     */
+    public CsrUnweightedGraph(boolean directed, int n, int[] begins, int[] ends, int m) {
+        undirected = !directed;
+        // Count the edges out of each vertex, then turn the counts into
+        // starting positions, as in a counting sort.
+        int[] start = new int[n + 1];
+        for(int i = 0; i < m; i++) {
+            int b = begins[i];
+            int e = ends[i];
+            if(b < 0 || b >= n || e < 0 || e >= n) {
+                throw new IndexOutOfBoundsException();
+            }
+            start[b + 1]++;
+            if(undirected && b != e) {
+                start[e + 1]++;
+            }
+        }
+        for(int v = 0; v < n; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] buf = new int[start[n]];
+        int[] next = Arrays.copyOf(start, n);
+        for(int i = 0; i < m; i++) {
+            int b = begins[i];
+            int e = ends[i];
+            buf[next[b]++] = e;
+            if(undirected && b != e) {
+                buf[next[e]++] = b;
+            }
+        }
+        // Sort each group and squeeze out duplicates in place.  The write
+        // position never passes the read position, so one buffer suffices.
+        offsets = new int[n + 1];
+        int w = 0;
+        for(int v = 0; v < n; v++) {
+            offsets[v] = w;
+            Arrays.sort(buf, start[v], start[v + 1]);
+            for(int r = start[v]; r < start[v + 1]; r++) {
+                if(w == offsets[v] || buf[w - 1] != buf[r]) {
+                    buf[w++] = buf[r];
+                }
+            }
+        }
+        offsets[n] = w;
+        targets = (w == buf.length) ? buf : Arrays.copyOf(buf, w);
+        inOffsets = undirected ? offsets : countInLinks(offsets, targets);
+        sources = undirected ? targets : collectInLinks(offsets, targets, inOffsets);
+        edgeCount = countEdges(undirected, offsets, targets);
+    }
+
+    // Constructs a graph directly from its arrays, which are not copied.
+    private CsrUnweightedGraph(boolean undirected, int[] offsets, int[] targets,
+                               int[] inOffsets, int[] sources, int edgeCount) {
+        this.undirected = undirected;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.inOffsets = inOffsets;
+        this.sources = sources;
+        this.edgeCount = edgeCount;
+    }
+
+    // Returns the number of edges stored in the given out-link arrays.
+    private static int countEdges(boolean undirected, int[] offsets, int[] targets) {
+        if(!undirected) {
+            return targets.length;
+        }
+        int selfLoops = 0;
+        for(int v = 0; v < offsets.length - 1; v++) {
+            for(int i = offsets[v]; i < offsets[v + 1]; i++) {
+                if(targets[i] == v) {
+                    selfLoops++;
+                }
+            }
+        }
+        return (targets.length + selfLoops)/2;
+    }
+
+    // Returns the in-link offsets matching the given out-link arrays.
+    private static int[] countInLinks(int[] offsets, int[] targets) {
+        int n = offsets.length - 1;
+        int[] in = new int[n + 1];
+        for(int u : targets) {
+            in[u + 1]++;
+        }
+        for(int v = 0; v < n; v++) {
+            in[v + 1] += in[v];
+        }
+        return in;
+    }
+
+    // Returns the in-link sources matching the given out-link arrays.
+    // Visiting the sources in increasing order leaves each group sorted.
+    private static int[] collectInLinks(int[] offsets, int[] targets, int[] inOffsets) {
+        int n = offsets.length - 1;
+        int[] next = Arrays.copyOf(inOffsets, n);
+        int[] in = new int[targets.length];
+        for(int v = 0; v < n; v++) {
+            for(int i = offsets[v]; i < offsets[v + 1]; i++) {
+                in[next[targets[i]]++] = v;
+            }
+        }
+        return in;
+    }
+
+    /** Returns the transpose of this graph: a graph with the same vertices in
+     * which there is an edge from u to v if and only if this graph has an
+     * edge from v to u.  The transpose shares this graph's arrays, so this
+     * takes constant time.
+     */
+    public CsrUnweightedGraph transpose() {
+        return new CsrUnweightedGraph(undirected, inOffsets, sources, offsets, targets, edgeCount);
+    }
+
+    /** Unsupported: a CSR graph cannot grow.
+     * @throws UnsupportedOperationException always.
+     */
+    public int addVertex() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: a CSR graph cannot grow.
+     * @throws UnsupportedOperationException always.
+     */
+    public boolean addEdge(int begin, int end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: a CSR graph cannot change.
+     * @throws UnsupportedOperationException always.
+     */
+    public boolean removeEdge(int begin, int end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: a CSR graph cannot change.
+     * @throws UnsupportedOperationException always.
+     */
+    public boolean removeVertex(int v) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: a CSR graph cannot grow.
+     * @throws UnsupportedOperationException always.
+     */
+    public int addEdges(int[] begins, int[] ends, int count) {
+        throw new UnsupportedOperationException();
+    }
+
+    private void checkVertex(int v) {
+        if(v < 0 || v >= offsets.length - 1) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /** Checks whether an edge exists between two vertices.
+     * In an undirected graph, this returns the same as hasEdge(end, begin).
+     * @return true if there is an edge from begin to end.
+     */
+    public boolean hasEdge(int begin, int end) {
+        checkVertex(begin);
+        checkVertex(end);
+        return Arrays.binarySearch(targets, offsets[begin], offsets[begin + 1], end) >= 0;
+    }
+
+    /** Returns the out-degree of the specified vertex. */
+    public int getDegree(int v) {
+        checkVertex(v);
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /** Returns the in-degree of the specified vertex. */
+    public int getInDegree(int v) {
+        checkVertex(v);
+        return inOffsets[v + 1] - inOffsets[v];
+    }
+
+    /** Returns an iterable object that allows iteration over the neighbors of
+     * the specified vertex, in increasing order of ID.
+     */
+    public Iterable<Integer> getNeighbors(int v) {
+        checkVertex(v);
+        return slice(targets, offsets[v], offsets[v + 1]);
+    }
+
+    /** Returns an iterable object that allows iteration over the in-neighbors
+     * of the specified vertex, in increasing order of ID.
+     */
+    public Iterable<Integer> getInNeighbors(int v) {
+        checkVertex(v);
+        return slice(sources, inOffsets[v], inOffsets[v + 1]);
+    }
+
+    // Returns a read-only view of array[begin] through array[end - 1].
+    private static Iterable<Integer> slice(final int[] array, final int begin, final int end) {
+        return new Iterable<Integer>() {
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int i = begin;
+                    public boolean hasNext() {
+                        return i < end;
+                    }
+                    public Integer next() {
+                        if(i >= end) {
+                            throw new NoSuchElementException();
+                        }
+                        return array[i++];
+                    }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /** Calls action.accept(u) for each neighbor u of the specified vertex, in
+     * increasing order of ID.
+     */
+    public void forEachNeighbor(int v, IntConsumer action) {
+        checkVertex(v);
+        for(int i = offsets[v]; i < offsets[v + 1]; i++) {
+            action.accept(targets[i]);
+        }
+    }
+
+    /** Copies the neighbors of the specified vertex into dest, starting at
+     * index 0, in increasing order of ID.
+     * @return the number of neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getDegree(v).
+     */
+    public int copyNeighbors(int v, int[] dest) {
+        checkVertex(v);
+        int d = offsets[v + 1] - offsets[v];
+        System.arraycopy(targets, offsets[v], dest, 0, d);
+        return d;
+    }
+
+    /** Copies the in-neighbors of the specified vertex into dest, starting at
+     * index 0, in increasing order of ID.
+     * @return the number of in-neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getInDegree(v).
+     */
+    public int copyInNeighbors(int v, int[] dest) {
+        checkVertex(v);
+        int d = inOffsets[v + 1] - inOffsets[v];
+        System.arraycopy(sources, inOffsets[v], dest, 0, d);
+        return d;
+    }
+
+    /** Returns the number of vertices in the graph. */
+    public int numVerts() {
+        return offsets.length - 1;
+    }
+
+    /** Returns the number of edges in the graph.
+     * The result does *not* double-count edges in undirected graphs.
+     */
+    public int numEdges() {
+        return edgeCount;
+    }
+
+    /** Returns true if the graph is directed. */
+    public boolean isDirected() {
+        return !undirected;
+    }
+
+    /** Returns true if there are no vertices in the graph. */
+    public boolean isEmpty() {
+        return offsets.length == 1;
+    }
+
+    /** Unsupported: a CSR graph is immutable.
+     * @throws UnsupportedOperationException always.
+     */
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,280 @@
+import java.util.Arrays;
+/**
+ * A reusable direction-optimizing breadth-first search engine, after Beamer,
+ * Asanovic and Patterson.  Each level is expanded either top-down, scanning
+ * the out-links of every frontier vertex as an ordinary search does, or
+ * bottom-up, scanning the in-links of every unvisited vertex until one of
+ * them leads back into the frontier.
+ *   On a small-world graph the middle levels hold a large share of all
+ * vertices, and top-down expansion then spends most of its time on links to
+ * vertices that are already visited.  Bottom-up expansion stops at the first
+ * frontier in-neighbor it finds, so on those levels it checks far fewer
+ * links.  The engine goes bottom-up once the frontier's out-links outnumber
+ * the in-links of the unvisited vertices by more than ALPHA to 1, and back to
+ * top-down once the frontier shrinks below 1/BETA of the graph.
+ *   The visited set and the frontiers are bitsets, so that bottom-up steps
+ * can test frontier membership with one bit test and find unvisited vertices
+ * 64 at a time.  As with the other engines, the arrays are reused between
+ * queries, and an engine is not safe for use by more than one thread at a
+ * time.
+ *
+ * @author Yitong Chen
+ * @author Anton Nagy
+ */
+public class DirectionOptimizingSearch {
+    // Switches to bottom-up when frontier out-links exceed 1/ALPHA of the
+    // unexplored in-links, and back to top-down when the frontier holds fewer
+    // than 1/BETA of the vertices; the values Beamer et al. found best.
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+
+    // The graph being searched.
+    private final Graph graph;
+
+    // Bit v of visited is set if v was visited in this query; frontierBits and
+    // nextBits hold the current and the next level in the same form.
+    private long[] visited;
+    private long[] frontierBits;
+    private long[] nextBits;
+
+    // The current and the next level as lists of vertices.
+    private int[] frontier;
+    private int[] next;
+
+    // parent[v] is the vertex from which v was discovered; only meaningful if
+    // v was visited in this query.
+    private int[] parent;
+
+    // Scratch array each vertex's neighbors are copied into.
+    private int[] neighborBuffer;
+
+    /**
+    * Constructs a search engine for the given graph.
+    * @param graph the graph to search
+    */
+    public DirectionOptimizingSearch(Graph graph) {
+        this.graph = graph;
+        visited = new long[0];
+        frontierBits = new long[0];
+        nextBits = new long[0];
+        frontier = new int[0];
+        next = new int[0];
+        parent = new int[0];
+        neighborBuffer = new int[0];
+    }
+
+    /**
+    * Returns the vertex IDs on a shortest path from source to target, with source
+    * at position 0 and target in the final position. If source and target are the
+    * same, the path is just that vertex. If no path exists, returns an empty array.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return IDs of the vertices on the shortest path
+    */
+    public int[] shortestPath(int source, int target) {
+        int length = shortestPathLength(source, target);
+        int[] path = new int[length + 1];
+        int v = target;
+        for (int i = length; i >= 0; i --) {
+            path[i] = v;
+            v = parent[v];
+        }
+        return path;
+    }
+
+    /**
+    * Returns the number of edges on a shortest path from source to target, 0 if
+    * they are the same vertex, or -1 if no path exists.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return length of shortest path
+    */
+    public int shortestPathLength(int source, int target) {
+        int n = graph.numVerts();
+        if (source < 0 || source >= n || target < 0 || target >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+        return search(source, target, null);
+    }
+
+    /**
+    * Returns the hop distance from source to every vertex, or -1 for vertices
+    * that cannot be reached, in a new array indexed by vertex ID.
+    * @param source ID of the starting vertex
+    * @return distance from source to each vertex
+    */
+    public int[] distances(int source) {
+        int n = graph.numVerts();
+        if (source < 0 || source >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+        int[] distance = new int[n];
+        Arrays.fill(distance, -1);
+        search(source, -1, distance);
+        return distance;
+    }
+
+    // Searches from source one level at a time until target is discovered, or
+    // over the whole graph if target is -1.  Returns the depth at which target
+    // was discovered, or -1.  If distance is not null, the depth of every
+    // visited vertex is recorded in it.
+    private int search(int source, int target, int[] distance) {
+        startQuery();
+        int n = graph.numVerts();
+        // Every link is some vertex's in-link; an undirected graph stores each
+        // edge as a link both ways.
+        long unexploredEdges = graph.isDirected() ? graph.numEdges() : 2L * graph.numEdges();
+
+        setBit(visited, source);
+        setBit(frontierBits, source);
+        frontier[0] = source;
+        int frontierSize = 1;
+        parent[source] = -1;
+        if (distance != null) {
+            distance[source] = 0;
+        }
+        if (source == target) {
+            return 0;
+        }
+        unexploredEdges -= graph.getInDegree(source);
+        long frontierEdges = graph.getDegree(source);
+
+        boolean bottomUp = false;
+        int depth = 0;
+        while (frontierSize > 0) {
+            depth ++;
+            if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < n / BETA) {
+                bottomUp = false;
+            }
+
+            int nextSize = 0;
+            frontierEdges = 0;
+            boolean found = false;
+            if (bottomUp) {
+                // Scans the unvisited vertices 64 at a time, as they stood
+                // before this level; vertices claimed in this level go into
+                // nextBits, not frontierBits, so they cannot act as parents.
+                for (int word = 0; word < visited.length && !found; word ++) {
+                    long unvisited = ~visited[word];
+                    while (unvisited != 0) {
+                        int v = (word << 6) + Long.numberOfTrailingZeros(unvisited);
+                        unvisited &= unvisited - 1;
+                        if (v >= n) {
+                            break;
+                        }
+                        int degree = copyNeighbors(v, true);
+                        int from = -1;
+                        for (int i = 0; i < degree; i ++) {
+                            if (testBit(frontierBits, neighborBuffer[i])) {
+                                from = neighborBuffer[i];
+                                break;
+                            }
+                        }
+                        if (from >= 0) {
+                            parent[v] = from;
+                            next[nextSize ++] = v;
+                            setBit(visited, v);
+                            setBit(nextBits, v);
+                            unexploredEdges -= graph.getInDegree(v);
+                            frontierEdges += graph.getDegree(v);
+                            if (distance != null) {
+                                distance[v] = depth;
+                            }
+                            if (v == target) {
+                                found = true;
+                                break;
+                            }
+                        }
+                    }
+                }
+            } else {
+                for (int f = 0; f < frontierSize && !found; f ++) {
+                    int u = frontier[f];
+                    int degree = copyNeighbors(u, false);
+                    for (int i = 0; i < degree; i ++) {
+                        int w = neighborBuffer[i];
+                        if (!testBit(visited, w)) {
+                            setBit(visited, w);
+                            setBit(nextBits, w);
+                            parent[w] = u;
+                            next[nextSize ++] = w;
+                            unexploredEdges -= graph.getInDegree(w);
+                            frontierEdges += graph.getDegree(w);
+                            if (distance != null) {
+                                distance[w] = depth;
+                            }
+                            if (w == target) {
+                                found = true;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            if (found) {
+                return depth;
+            }
+
+            // The next level becomes the frontier, and the old frontier's bits
+            // are cleared so its arrays can hold the level after.
+            for (int f = 0; f < frontierSize; f ++) {
+                clearBit(frontierBits, frontier[f]);
+            }
+            long[] bits = frontierBits;
+            frontierBits = nextBits;
+            nextBits = bits;
+            int[] list = frontier;
+            frontier = next;
+            next = list;
+            frontierSize = nextSize;
+        }
+        return -1;
+    }
+
+    // Copies the out-neighbors of v, or its in-neighbors if incoming is true,
+    // into the scratch array, growing it if needed.
+    private int copyNeighbors(int v, boolean incoming) {
+        int degree = incoming ? graph.getInDegree(v) : graph.getDegree(v);
+        if (neighborBuffer.length < degree) {
+            neighborBuffer = new int[degree];
+        }
+        if (incoming) {
+            return graph.copyInNeighbors(v, neighborBuffer);
+        }
+        return graph.copyNeighbors(v, neighborBuffer);
+    }
+
+    // Grows the arrays if the graph has grown, and empties the bitsets, which
+    // an early return may have left partly set.
+    private void startQuery() {
+        int n = graph.numVerts();
+        if (parent.length < n) {
+            int words = (n + 63) >>> 6;
+            visited = new long[words];
+            frontierBits = new long[words];
+            nextBits = new long[words];
+            frontier = new int[n];
+            next = new int[n];
+            parent = new int[n];
+        } else {
+            Arrays.fill(visited, 0);
+            Arrays.fill(frontierBits, 0);
+            Arrays.fill(nextBits, 0);
+        }
+    }
+
+    // Tests, sets and clears bit i of a bitset.
+    private static boolean testBit(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void setBit(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clearBit(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+}
@@ -0,0 +1,27 @@
+/**
+* A DistanceOracle answers hop-distance queries between any two vertices of a
+* graph from a precomputed index, without searching the graph.
+*
+* PathFinder.setDistanceOracle puts an oracle in front of its queries: lengths
+* come from the oracle directly, and paths are rebuilt from it one hop at a
+* time, at each vertex taking a link to a neighbor one hop closer to the target.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public interface DistanceOracle {
+    /**
+    * Returns the number of vertices the oracle covers.
+    * @return number of vertices in the graph the oracle was built for
+    */
+    public int numVerts();
+
+    /**
+    * Returns the number of edges on a shortest path from source to target, 0 if
+    * they are the same vertex, or -1 if no path exists.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return length of shortest path
+    */
+    public int getDistance(int source, int target);
+}
@@ -0,0 +1,232 @@
+import java.util.Arrays;
+/**
+ * A reusable breadth-first search engine that finds only hop distances, never
+ * paths.  Searches proceed one whole level at a time and keep nothing per
+ * vertex but a visited stamp: the distance of every vertex in a level is the
+ * level's depth, so there are no predecessor or distance arrays to fill in,
+ * and no path to walk back and convert once the target is found.
+ *   Point queries can search from the source alone, or from both ends at once
+ * as BidirectionalSearch does.  As with the other engines, all search state
+ * lives in int arrays reused between queries, and an engine is not safe for
+ * use by more than one thread at a time.
+ *
+ * @author Yitong Chen
+ * @author Anton Nagy
+ */
+public class DistanceSearch {
+    // The graph being searched.
+    private final Graph graph;
+
+    // Each side's queue holds every vertex that side has visited, in order of
+    // discovery, so each level is a contiguous run of the queue.
+    private int[] forwardQueue;
+    private int[] backwardQueue;
+
+    // Epoch stamps marking the vertices each side visited in this query.
+    private int[] forwardVisited;
+    private int[] backwardVisited;
+    private int epoch;
+
+    // Scratch array each vertex's neighbors are copied into.
+    private int[] neighborBuffer;
+
+    /**
+    * Constructs a search engine for the given graph.
+    * @param graph the graph to search
+    */
+    public DistanceSearch(Graph graph) {
+        this.graph = graph;
+        forwardQueue = new int[0];
+        backwardQueue = new int[0];
+        forwardVisited = new int[0];
+        backwardVisited = new int[0];
+        neighborBuffer = new int[0];
+        epoch = 0;
+    }
+
+    /**
+    * Returns the number of edges on a shortest path from source to target, 0 if
+    * they are the same vertex, or -1 if no path exists, searching outward from
+    * source alone.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return length of shortest path
+    */
+    public int distance(int source, int target) {
+        checkVertices(source, target);
+        if (source == target) {
+            return 0;
+        }
+        startQuery();
+        int head = 0;
+        int tail = 0;
+        forwardVisited[source] = epoch;
+        forwardQueue[tail ++] = source;
+
+        int depth = 0;
+        while (head < tail) {
+            depth ++;
+            int levelEnd = tail;
+            while (head < levelEnd) {
+                int degree = copyNeighbors(forwardQueue[head ++], false);
+                for (int i = 0; i < degree; i ++) {
+                    int w = neighborBuffer[i];
+                    if (forwardVisited[w] != epoch) {
+                        if (w == target) {
+                            return depth;
+                        }
+                        forwardVisited[w] = epoch;
+                        forwardQueue[tail ++] = w;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+    * Returns the same as distance(source, target), but searches forward from
+    * source and backward from target at once, one level at a time, always
+    * expanding whichever side has the smaller frontier.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return length of shortest path
+    */
+    public int bidirectionalDistance(int source, int target) {
+        checkVertices(source, target);
+        if (source == target) {
+            return 0;
+        }
+        startQuery();
+        int forwardHead = 0;
+        int forwardTail = 0;
+        int backwardHead = 0;
+        int backwardTail = 0;
+        forwardVisited[source] = epoch;
+        forwardQueue[forwardTail ++] = source;
+        backwardVisited[target] = epoch;
+        backwardQueue[backwardTail ++] = target;
+
+        // The depth each side has fully explored.  As in BidirectionalSearch,
+        // the first vertex either side discovers that the other side already
+        // visited lies on a shortest path, which is then exactly
+        // forwardDepth + backwardDepth edges long.
+        int forwardDepth = 0;
+        int backwardDepth = 0;
+        while (forwardHead < forwardTail && backwardHead < backwardTail) {
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                forwardDepth ++;
+                int levelEnd = forwardTail;
+                while (forwardHead < levelEnd) {
+                    int degree = copyNeighbors(forwardQueue[forwardHead ++], false);
+                    for (int i = 0; i < degree; i ++) {
+                        int w = neighborBuffer[i];
+                        if (forwardVisited[w] != epoch) {
+                            if (backwardVisited[w] == epoch) {
+                                return forwardDepth + backwardDepth;
+                            }
+                            forwardVisited[w] = epoch;
+                            forwardQueue[forwardTail ++] = w;
+                        }
+                    }
+                }
+            } else {
+                backwardDepth ++;
+                int levelEnd = backwardTail;
+                while (backwardHead < levelEnd) {
+                    int degree = copyNeighbors(backwardQueue[backwardHead ++], true);
+                    for (int i = 0; i < degree; i ++) {
+                        int w = neighborBuffer[i];
+                        if (backwardVisited[w] != epoch) {
+                            if (forwardVisited[w] == epoch) {
+                                return forwardDepth + backwardDepth;
+                            }
+                            backwardVisited[w] = epoch;
+                            backwardQueue[backwardTail ++] = w;
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+    * Returns the hop distance from source to every vertex, or -1 for vertices
+    * that cannot be reached, in a new array indexed by vertex ID.
+    * @param source ID of the starting vertex
+    * @return distance from source to each vertex
+    */
+    public int[] distances(int source) {
+        checkVertices(source, source);
+        startQuery();
+        int[] distance = new int[graph.numVerts()];
+        Arrays.fill(distance, -1);
+        int head = 0;
+        int tail = 0;
+        forwardVisited[source] = epoch;
+        forwardQueue[tail ++] = source;
+
+        int depth = 0;
+        while (head < tail) {
+            // Every vertex in the level about to be expanded is depth edges away.
+            int levelEnd = tail;
+            for (int i = head; i < levelEnd; i ++) {
+                distance[forwardQueue[i]] = depth;
+            }
+            depth ++;
+            while (head < levelEnd) {
+                int degree = copyNeighbors(forwardQueue[head ++], false);
+                for (int i = 0; i < degree; i ++) {
+                    int w = neighborBuffer[i];
+                    if (forwardVisited[w] != epoch) {
+                        forwardVisited[w] = epoch;
+                        forwardQueue[tail ++] = w;
+                    }
+                }
+            }
+        }
+        return distance;
+    }
+
+    // Throws if either vertex is not in the graph.
+    private void checkVertices(int source, int target) {
+        int n = graph.numVerts();
+        if (source < 0 || source >= n || target < 0 || target >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    // Copies the out-neighbors of v, or its in-neighbors if incoming is true,
+    // into the scratch array, growing it if needed.
+    private int copyNeighbors(int v, boolean incoming) {
+        int degree = incoming ? graph.getInDegree(v) : graph.getDegree(v);
+        if (neighborBuffer.length < degree) {
+            neighborBuffer = new int[degree];
+        }
+        if (incoming) {
+            return graph.copyInNeighbors(v, neighborBuffer);
+        }
+        return graph.copyNeighbors(v, neighborBuffer);
+    }
+
+    // Grows the arrays if the graph has grown, and moves on to a fresh epoch so
+    // that nothing from earlier queries counts as visited.
+    private void startQuery() {
+        int n = graph.numVerts();
+        if (forwardVisited.length < n) {
+            forwardQueue = new int[n];
+            backwardQueue = new int[n];
+            forwardVisited = new int[n];
+            backwardVisited = new int[n];
+            epoch = 0;
+        }
+        epoch ++;
+        if (epoch == Integer.MAX_VALUE) {
+            // Stamps from 2^31 queries ago would look current; start over.
+            Arrays.fill(forwardVisited, 0);
+            Arrays.fill(backwardVisited, 0);
+            epoch = 1;
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.Iterator;
+import java.util.function.IntConsumer;
 /**
  * A common interface for the Graph ADT, encompassing graphs both unweighted and
  * weighted, undirected and directed.  Note that an object of Graph type can't
@@ -42,11 +43,41 @@ public interface Graph {
      */
     public Iterable<Integer> getNeighbors(int v);
     
+    /** Calls action.accept(u) for each neighbor u of the specified vertex, in
+     * the same order as getNeighbors(v), without boxing any vertex IDs.
+     */
+    public void forEachNeighbor(int v, IntConsumer action);
+    
+    /** Copies the neighbors of the specified vertex into dest, starting at
+     * index 0, in the same order as getNeighbors(v).  This lets a traversal
+     * reuse one scratch array for every vertex it visits.
+     * @return the number of neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getDegree(v).
+     */
+    public int copyNeighbors(int v, int[] dest);
+    
+    /** Returns an iterable object that allows iteration over the in-neighbors
+     * of the specified vertex.  In particular, the vertex u is included in the
+     * sequence if and only if there is an edge from u to v in the graph.  In an
+     * undirected graph, this is the same sequence as getNeighbors(v).
+     */
+    public Iterable<Integer> getInNeighbors(int v);
+    
+    /** Copies the in-neighbors of the specified vertex into dest, starting at
+     * index 0, in the same order as getInNeighbors(v).
+     * @return the number of in-neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getInDegree(v).
+     */
+    public int copyInNeighbors(int v, int[] dest);
+    
     /** Returns the number of vertices in the graph. */
     public int numVerts();
     
     /** Returns the number of edges in the graph.
-     * The result does *not* double-count edges in undirected graphs.
+     * The result does *not* double-count edges in undirected graphs, and a
+     * self-loop counts as one edge.
      */
     public int numEdges();
     
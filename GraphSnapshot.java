@@ -0,0 +1,276 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+* GraphSnapshot writes a loaded graph and its article names to a compact binary
+* file, and opens such a file again by memory-mapping it, so that a prebuilt
+* graph is ready in milliseconds instead of being re-parsed from text.
+*
+* All values are big-endian 32-bit ints unless noted. The file holds, in order:
+* <ul>
+* <li>a header: the magic number 0x57504731 ("WPG1"), the format version, 1 if
+* the graph is directed and 0 if not, the number of vertices N, and the number
+* of stored edge entries M (each undirected edge counts twice);</li>
+* <li>the string table: N+1 offsets into the name bytes, followed by the UTF-8
+* bytes of every name, in ID order, padded to a multiple of 4 bytes;</li>
+* <li>the out-link CSR arrays: N+1 offsets and M targets;</li>
+* <li>for a directed graph only, the in-link CSR arrays: N+1 offsets and M
+* sources;</li>
+* <li>the number of removed vertices R, followed by their R IDs in increasing
+* order. A removed vertex keeps its ID and name but has no links, and its name
+* is not looked up.</li>
+* </ul>
+* Version 1 files end after the CSR arrays and have no removed vertices; they
+* can still be opened.
+* The CSR arrays are laid out exactly as in CsrUnweightedGraph, and the opened
+* snapshot's MappedCsrGraph reads them from the mapping without copying.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class GraphSnapshot {
+    private static final int MAGIC = 0x57504731;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 20;
+
+    // The names of the vertices, by ID.
+    private final List<String> names;
+
+    // The graph, read from the mapping.
+    private final MappedCsrGraph graph;
+
+    // The IDs of the removed vertices, in increasing order.
+    private final int[] removedIds;
+
+    private GraphSnapshot(List<String> names, MappedCsrGraph graph, int[] removedIds) {
+        this.names = names;
+        this.graph = graph;
+        this.removedIds = removedIds;
+    }
+
+    /**
+    * Returns the names of the vertices, in ID order.
+    * @return the vertex names
+    */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+    * Returns the graph, backed by the mapped file.
+    * @return the graph
+    */
+    public MappedCsrGraph getGraph() {
+        return graph;
+    }
+
+    /**
+    * Returns the IDs of the vertices that had been removed when the snapshot was
+    * written, in increasing order.
+    * @return the removed IDs
+    */
+    public int[] getRemovedIds() {
+        return removedIds.clone();
+    }
+
+    /**
+    * Writes a graph and the names of its vertices to a snapshot file.
+    * @param path name of the file to write
+    * @param names the name of each vertex, in ID order
+    * @param graph the graph
+    * @throws IOException if the file cannot be written
+    */
+    public static void write(String path, List<String> names, Graph graph) throws IOException {
+        write(path, names, new int[0], graph);
+    }
+
+    /**
+    * Writes a graph, the names of its vertices and the IDs of its removed vertices
+    * to a snapshot file.
+    * @param path name of the file to write
+    * @param names the name of each vertex, in ID order
+    * @param removedIds the IDs of the removed vertices, in increasing order
+    * @param graph the graph
+    * @throws IOException if the file cannot be written
+    */
+    public static void write(String path, List<String> names, int[] removedIds, Graph graph)
+        throws IOException {
+        int n = graph.numVerts();
+        if (names.size() != n) {
+            throw new IllegalArgumentException("Expected " + n + " names, got " + names.size());
+        }
+        for (int i = 0; i < removedIds.length; i ++) {
+            if (removedIds[i] < 0 || removedIds[i] >= n
+                || (i > 0 && removedIds[i] <= removedIds[i - 1])) {
+                throw new IllegalArgumentException("Removed IDs must be increasing IDs below " + n);
+            }
+        }
+        byte[][] nameBytes = new byte[n][];
+        int[] nameOffsets = new int[n + 1];
+        for (int v = 0; v < n; v ++) {
+            nameBytes[v] = names.get(v).getBytes(StandardCharsets.UTF_8);
+            nameOffsets[v + 1] = nameOffsets[v] + nameBytes[v].length;
+        }
+        int[] offsets = new int[n + 1];
+        int[] inOffsets = new int[n + 1];
+        for (int v = 0; v < n; v ++) {
+            offsets[v + 1] = offsets[v] + graph.getDegree(v);
+            inOffsets[v + 1] = inOffsets[v] + graph.getInDegree(v);
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(path), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(graph.isDirected() ? 1 : 0);
+            out.writeInt(n);
+            out.writeInt(offsets[n]);
+
+            writeInts(out, nameOffsets, nameOffsets.length);
+            for (byte[] bytes : nameBytes) {
+                out.write(bytes);
+            }
+            for (int pad = nameOffsets[n]; pad % 4 != 0; pad ++) {
+                out.writeByte(0);
+            }
+
+            int[] buffer = new int[0];
+            writeInts(out, offsets, offsets.length);
+            for (int v = 0; v < n; v ++) {
+                buffer = grow(buffer, graph.getDegree(v));
+                int d = graph.copyNeighbors(v, buffer);
+                // Lookups binary-search each group, so it must be sorted.
+                Arrays.sort(buffer, 0, d);
+                writeInts(out, buffer, d);
+            }
+            if (graph.isDirected()) {
+                writeInts(out, inOffsets, inOffsets.length);
+                for (int v = 0; v < n; v ++) {
+                    buffer = grow(buffer, graph.getInDegree(v));
+                    int d = graph.copyInNeighbors(v, buffer);
+                    Arrays.sort(buffer, 0, d);
+                    writeInts(out, buffer, d);
+                }
+            }
+            out.writeInt(removedIds.length);
+            writeInts(out, removedIds, removedIds.length);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+    * Opens a snapshot file. The graph's arrays stay in the mapped file; only the
+    * names are decoded onto the heap.
+    * @param path name of the snapshot file
+    * @return the snapshot
+    * @throws IOException if the file cannot be read or is not a snapshot
+    */
+    public static GraphSnapshot read(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a graph snapshot");
+            }
+            int version = header.getInt(4);
+            if (version != 1 && version != VERSION) {
+                throw new IOException(path + " has unsupported snapshot version " + version);
+            }
+            boolean directed = header.getInt(8) != 0;
+            int n = header.getInt(12);
+            int m = header.getInt(16);
+
+            long pos = HEADER_BYTES;
+            IntBuffer nameOffsets = mapInts(channel, pos, n + 1);
+            pos += 4L * (n + 1);
+            int nameBytes = nameOffsets.get(n);
+            MappedByteBuffer nameData = channel.map(FileChannel.MapMode.READ_ONLY, pos, nameBytes);
+            pos += (nameBytes + 3) / 4 * 4L;
+
+            List<String> names = new ArrayList<String>(n);
+            byte[] bytes = new byte[0];
+            for (int v = 0; v < n; v ++) {
+                int begin = nameOffsets.get(v);
+                int length = nameOffsets.get(v + 1) - begin;
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                nameData.position(begin);
+                nameData.get(bytes, 0, length);
+                names.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+
+            IntBuffer offsets = mapInts(channel, pos, n + 1);
+            pos += 4L * (n + 1);
+            IntBuffer targets = mapInts(channel, pos, m);
+            pos += 4L * m;
+            IntBuffer inOffsets = offsets;
+            IntBuffer sources = targets;
+            if (directed) {
+                inOffsets = mapInts(channel, pos, n + 1);
+                pos += 4L * (n + 1);
+                sources = mapInts(channel, pos, m);
+                pos += 4L * m;
+            }
+            int[] removedIds = new int[0];
+            if (version >= 2) {
+                int count = mapInts(channel, pos, 1).get(0);
+                pos += 4;
+                if (count < 0 || count > n) {
+                    throw new IOException(path + " is truncated or corrupt");
+                }
+                removedIds = new int[count];
+                mapInts(channel, pos, count).get(removedIds);
+                pos += 4L * count;
+                for (int i = 0; i < count; i ++) {
+                    if (removedIds[i] < 0 || removedIds[i] >= n
+                        || (i > 0 && removedIds[i] <= removedIds[i - 1])) {
+                        throw new IOException(path + " is truncated or corrupt");
+                    }
+                }
+            }
+            if (pos != channel.size()) {
+                throw new IOException(path + " is truncated or corrupt");
+            }
+            // The mappings stay valid after the file is closed.
+            return new GraphSnapshot(names,
+                new MappedCsrGraph(directed, offsets, targets, inOffsets, sources), removedIds);
+        } finally {
+            file.close();
+        }
+    }
+
+    // Maps count ints of the file, starting at byte pos, as an int buffer.
+    private static IntBuffer mapInts(FileChannel channel, long pos, int count) throws IOException {
+        if (pos + 4L * count > channel.size()) {
+            throw new IOException("Snapshot is truncated or corrupt");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * count).asIntBuffer();
+    }
+
+    // Writes the first count entries of values.
+    private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i ++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    // Returns buffer if it holds at least size ints, or a bigger array.
+    private static int[] grow(int[] buffer, int size) {
+        return buffer.length >= size ? buffer : new int[size];
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+* GraphVersions lets the graph change while queries are being served, by keeping
+* every published state of it immutable.
+*
+* Each version is a ConcurrentPathQueryEngine over a frozen graph, such as the one
+* PathFinder.createQueryEngine builds after a batch of changes. A writer publishes
+* a new version in a single atomic step; a reader pins the current version for the
+* length of a query, with no locks, and sees that version and no other even if a
+* newer one is published meanwhile. A version that has been replaced is reclaimed
+* as soon as its last reader unpins it: it drops its engine, so that the graph,
+* names and oracle it held can be collected while the Version object itself may
+* still be referenced.
+*
+* Readers and writers may be any number of threads. Publishing is serialized with
+* other publishing, but never waits for readers.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class GraphVersions {
+    /**
+    * One published state of the graph. A reader gets one from acquire, queries its
+    * engine, and then calls release exactly once.
+    */
+    public static class Version {
+        // The number of this version, counting up from 1.
+        private final long number;
+
+        // The engine, or null once the version is reclaimed.
+        private volatile ConcurrentPathQueryEngine engine;
+
+        // The number of readers holding the version, or -1 once it is
+        // reclaimed.
+        private final AtomicInteger pins;
+
+        // True once a newer version has been published.
+        private volatile boolean retired;
+
+        // The holder, told when the version is reclaimed.
+        private final GraphVersions owner;
+
+        private Version(GraphVersions owner, long number, ConcurrentPathQueryEngine engine) {
+            this.owner = owner;
+            this.number = number;
+            this.engine = engine;
+            pins = new AtomicInteger();
+            retired = false;
+        }
+
+        /**
+        * Returns the number of this version. Each publish gives the next number.
+        * @return version number
+        */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+        * Returns the engine answering queries against this version.
+        * @return the query engine
+        * @throws IllegalStateException if the version has been reclaimed
+        */
+        public ConcurrentPathQueryEngine getEngine() {
+            ConcurrentPathQueryEngine current = engine;
+            if (current == null) {
+                throw new IllegalStateException("Version " + number + " has been reclaimed");
+            }
+            return current;
+        }
+
+        /**
+        * Unpins the version. If it has been replaced and this was its last reader,
+        * it is reclaimed.
+        * @throws IllegalStateException if the version is not pinned
+        */
+        public void release() {
+            int remaining = pins.decrementAndGet();
+            if (remaining < 0) {
+                pins.incrementAndGet();
+                throw new IllegalStateException("Version " + number + " is not pinned");
+            }
+            if (remaining == 0 && retired) {
+                reclaim();
+            }
+        }
+
+        // Pins the version unless it has already been reclaimed; returns
+        // whether it was pinned.
+        private boolean pin() {
+            while (true) {
+                int count = pins.get();
+                if (count < 0) {
+                    return false;
+                }
+                if (pins.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        // Marks the version as replaced, and reclaims it if no reader holds it.
+        private void retire() {
+            retired = true;
+            reclaim();
+        }
+
+        // Reclaims the version if no reader holds it. Only one caller can move
+        // the pin count from 0 to -1, so this happens at most once.
+        private void reclaim() {
+            if (pins.compareAndSet(0, -1)) {
+                engine = null;
+                owner.retainedVersions.decrementAndGet();
+            }
+        }
+    }
+
+    // The version new readers pin.
+    private final AtomicReference<Version> current;
+
+    // The number of versions not yet reclaimed, the current one included.
+    private final AtomicInteger retainedVersions;
+
+    /**
+    * Constructs a holder whose first version is answered by the given engine.
+    * @param engine the engine for version 1
+    */
+    public GraphVersions(ConcurrentPathQueryEngine engine) {
+        if (engine == null) {
+            throw new NullPointerException("engine");
+        }
+        retainedVersions = new AtomicInteger(1);
+        current = new AtomicReference<Version>(new Version(this, 1, engine));
+    }
+
+    /**
+    * Pins the current version and returns it. The caller must release it when its
+    * query is done; until then the version's engine stays valid.
+    * @return the pinned version
+    */
+    public Version acquire() {
+        while (true) {
+            Version version = current.get();
+            if (version.pin()) {
+                if (current.get() == version) {
+                    return version;
+                }
+                // Replaced while being pinned; take the newer one instead.
+                version.release();
+            }
+        }
+    }
+
+    /**
+    * Publishes a new version answered by the given engine. Readers that acquire
+    * from now on get it; readers holding older versions keep them until they
+    * release them.
+    * @param engine the engine for the new version, over a graph that will not change
+    * @return the number of the new version
+    */
+    public synchronized long publish(ConcurrentPathQueryEngine engine) {
+        if (engine == null) {
+            throw new NullPointerException("engine");
+        }
+        Version old = current.get();
+        Version next = new Version(this, old.number + 1, engine);
+        retainedVersions.incrementAndGet();
+        current.set(next);
+        old.retire();
+        return next.number;
+    }
+
+    /**
+    * Returns the number of the current version.
+    * @return version number
+    */
+    public long getCurrentNumber() {
+        return current.get().number;
+    }
+
+    /**
+    * Returns the number of versions that have not been reclaimed, including the
+    * current one; more than 1 means readers still hold replaced versions.
+    * @return number of retained versions
+    */
+    public int getRetainedVersionCount() {
+        return retainedVersions.get();
+    }
+}
@@ -0,0 +1,399 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+* HubLabelIndex answers exact hop-distance queries with a 2-hop cover: every
+* vertex v has an out-label of hubs it can reach, with d(v, hub), and an in-label
+* of hubs that reach it, with d(hub, v), chosen so that for every pair s, t with
+* a path, some shortest path from s to t passes through a hub in both the
+* out-label of s and the in-label of t. The distance is then the least
+* d(s, hub) + d(hub, t) over the hubs the two labels share, found by merging the
+* two sorted lists, with no search of the graph.
+*
+* The labels are built by pruned landmark labeling (Akiba, Iwata and Yoshida):
+* vertices are taken in order of how many links they have, in and out, and from
+* each a breadth-first search forwards and one backwards add it as a hub to the
+* labels of the vertices they reach, except that a search goes no further from a
+* vertex whose distance the labels built so far already give. On a small-world
+* graph most shortest paths pass through the first few hubs, so the searches
+* stay small and the labels short: far smaller than a DistanceMatrix on a large
+* graph, though slower to query.
+*
+* Hubs are stored by their rank in that order, so each label is sorted by hub.
+* The labels of all vertices are kept in flat int arrays, with the labels of
+* vertex v at positions offset[v] up to offset[v + 1].
+*
+* The file holds the magic number 0x57504831 ("WPH1"), the format version, the
+* number of vertices N, and the total number of out-label and in-label entries,
+* as big-endian 32-bit ints, followed by the out-labels and then the in-labels,
+* each as N + 1 offsets, the hub of every entry, and the distance of every entry.
+*
+* Lookups may be made from any number of threads at once.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class HubLabelIndex implements DistanceOracle {
+    private static final int MAGIC = 0x57504831;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+
+    // The number of vertices.
+    private final int n;
+
+    // The out-labels: outHub[i] and outDistance[i] for offsets outOffset[v]
+    // up to outOffset[v + 1] are the hubs v reaches and its distances to them.
+    private final int[] outOffset;
+    private final int[] outHub;
+    private final int[] outDistance;
+
+    // The in-labels, laid out the same way, with the distances from each hub.
+    private final int[] inOffset;
+    private final int[] inHub;
+    private final int[] inDistance;
+
+    private HubLabelIndex(int n, int[] outOffset, int[] outHub, int[] outDistance,
+                          int[] inOffset, int[] inHub, int[] inDistance) {
+        this.n = n;
+        this.outOffset = outOffset;
+        this.outHub = outHub;
+        this.outDistance = outDistance;
+        this.inOffset = inOffset;
+        this.inHub = inHub;
+        this.inDistance = inDistance;
+    }
+
+    /**
+    * Computes the labels of the given graph. The graph must not change meanwhile.
+    * @param graph the graph
+    * @return the index
+    */
+    public static HubLabelIndex compute(final Graph graph) {
+        int n = graph.numVerts();
+        Integer[] byDegree = new Integer[n];
+        for (int v = 0; v < n; v ++) {
+            byDegree[v] = v;
+        }
+        Arrays.sort(byDegree, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(linkCount(graph, b), linkCount(graph, a));
+            }
+        });
+
+        LabelBuilder out = new LabelBuilder(n);
+        LabelBuilder in = new LabelBuilder(n);
+        // rootDistance[h] is the root's distance to or from hub h in the
+        // current search, or Integer.MAX_VALUE if h is not in its label.
+        int[] rootDistance = new int[n];
+        Arrays.fill(rootDistance, Integer.MAX_VALUE);
+        int[] distance = new int[n];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[n];
+        int[] neighbors = new int[0];
+        for (int rank = 0; rank < n; rank ++) {
+            int root = byDegree[rank];
+            for (int pass = 0; pass < 2; pass ++) {
+                // The first pass searches forwards from the root and labels
+                // the vertices it reaches with their distance from the root;
+                // the second searches backwards, and labels them with their
+                // distance to it.
+                boolean forwards = pass == 0;
+                LabelBuilder rootLabel = forwards ? out : in;
+                LabelBuilder reachedLabel = forwards ? in : out;
+                rootLabel.spread(root, rootDistance);
+
+                distance[root] = 0;
+                queue[0] = root;
+                int head = 0;
+                int tail = 1;
+                while (head < tail) {
+                    int u = queue[head ++];
+                    if (reachedLabel.covers(u, rootDistance, distance[u])) {
+                        continue;
+                    }
+                    reachedLabel.add(u, rank, distance[u]);
+                    int degree = forwards ? graph.getDegree(u) : graph.getInDegree(u);
+                    if (neighbors.length < degree) {
+                        neighbors = new int[degree];
+                    }
+                    if (forwards) {
+                        graph.copyNeighbors(u, neighbors);
+                    } else {
+                        graph.copyInNeighbors(u, neighbors);
+                    }
+                    for (int i = 0; i < degree; i ++) {
+                        int w = neighbors[i];
+                        if (distance[w] < 0) {
+                            distance[w] = distance[u] + 1;
+                            queue[tail ++] = w;
+                        }
+                    }
+                }
+
+                for (int i = 0; i < tail; i ++) {
+                    distance[queue[i]] = -1;
+                }
+                rootLabel.unspread(root, rootDistance);
+            }
+        }
+        return new HubLabelIndex(n, out.offsets(), out.flatHubs(), out.flatDistances(),
+                                 in.offsets(), in.flatHubs(), in.flatDistances());
+    }
+
+    /**
+    * Reads an index file written by write.
+    * @param path name of the index file
+    * @return the index
+    * @throws IOException if the file cannot be read or is not a hub label index
+    */
+    public static HubLabelIndex read(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(path + " is not a hub label index");
+            }
+            IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                .asIntBuffer();
+            if (header.get(0) != MAGIC) {
+                throw new IOException(path + " is not a hub label index");
+            }
+            if (header.get(1) != VERSION) {
+                throw new IOException(path + " has unsupported hub label index version "
+                                      + header.get(1));
+            }
+            int n = header.get(2);
+            int outEntries = header.get(3);
+            int inEntries = header.get(4);
+            long ints = 2L * (n + 1) + 2L * outEntries + 2L * inEntries;
+            if (n < 0 || outEntries < 0 || inEntries < 0
+                || channel.size() != HEADER_BYTES + 4 * ints) {
+                throw new IOException(path + " is truncated or corrupt");
+            }
+            IntBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, 4 * ints)
+                .asIntBuffer();
+            int[] outOffset = readInts(body, n + 1);
+            int[] outHub = readInts(body, outEntries);
+            int[] outDistance = readInts(body, outEntries);
+            int[] inOffset = readInts(body, n + 1);
+            int[] inHub = readInts(body, inEntries);
+            int[] inDistance = readInts(body, inEntries);
+            if (!isOffsets(outOffset, outEntries) || !isOffsets(inOffset, inEntries)) {
+                throw new IOException(path + " is truncated or corrupt");
+            }
+            return new HubLabelIndex(n, outOffset, outHub, outDistance,
+                                     inOffset, inHub, inDistance);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+    * Writes the index to a file, which read can open again.
+    * @param path name of the file to write
+    * @throws IOException if the file cannot be written
+    */
+    public void write(String path) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(path), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(outHub.length);
+            out.writeInt(inHub.length);
+            writeInts(out, outOffset);
+            writeInts(out, outHub);
+            writeInts(out, outDistance);
+            writeInts(out, inOffset);
+            writeInts(out, inHub);
+            writeInts(out, inDistance);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+    * Returns the number of vertices the index covers.
+    * @return number of vertices
+    */
+    public int numVerts() {
+        return n;
+    }
+
+    /**
+    * Returns the number of edges on a shortest path from source to target, 0 if
+    * they are the same vertex, or -1 if no path exists.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return length of shortest path
+    */
+    public int getDistance(int source, int target) {
+        if (source < 0 || source >= n || target < 0 || target >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+        int best = Integer.MAX_VALUE;
+        int i = outOffset[source];
+        int iEnd = outOffset[source + 1];
+        int j = inOffset[target];
+        int jEnd = inOffset[target + 1];
+        while (i < iEnd && j < jEnd) {
+            int outRank = outHub[i];
+            int inRank = inHub[j];
+            if (outRank == inRank) {
+                best = Math.min(best, outDistance[i] + inDistance[j]);
+            }
+            // Written without branches, which the processor would mispredict
+            // about as often as not.
+            i += outRank <= inRank ? 1 : 0;
+            j += inRank <= outRank ? 1 : 0;
+        }
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    /**
+    * Returns the average number of entries in a vertex's out-label and in-label
+    * together.
+    * @return average label size
+    */
+    public double getAverageLabelSize() {
+        return n == 0 ? 0 : (outHub.length + inHub.length) / (double) n;
+    }
+
+    /**
+    * Returns the approximate number of bytes the labels take up.
+    * @return size of the index in bytes
+    */
+    public long sizeInBytes() {
+        return 4L * (outOffset.length + inOffset.length)
+            + 8L * (outHub.length + inHub.length);
+    }
+
+    // Returns the number of links into and out of v.
+    private static int linkCount(Graph graph, int v) {
+        return graph.getDegree(v) + graph.getInDegree(v);
+    }
+
+    // Reads the next count ints of a buffer into a new array.
+    private static int[] readInts(IntBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.get(values);
+        return values;
+    }
+
+    // Returns true if offsets start at 0, never decrease, and end at entries.
+    private static boolean isOffsets(int[] offsets, int entries) {
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != entries) {
+            return false;
+        }
+        for (int v = 1; v < offsets.length; v ++) {
+            if (offsets[v] < offsets[v - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Writes every int of an array.
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    // The labels of every vertex on one side while they are being built, each
+    // in its own growing pair of arrays.
+    private static final class LabelBuilder {
+        private final int[][] hubs;
+        private final int[][] distances;
+        private final int[] sizes;
+
+        LabelBuilder(int n) {
+            hubs = new int[n][];
+            distances = new int[n][];
+            sizes = new int[n];
+        }
+
+        // Appends hub rank at the given distance to v's label.  Hubs arrive in
+        // increasing rank, so the label stays sorted.
+        void add(int v, int rank, int distance) {
+            int size = sizes[v];
+            if (hubs[v] == null) {
+                hubs[v] = new int[4];
+                distances[v] = new int[4];
+            } else if (size == hubs[v].length) {
+                hubs[v] = Arrays.copyOf(hubs[v], 2 * size);
+                distances[v] = Arrays.copyOf(distances[v], 2 * size);
+            }
+            hubs[v][size] = rank;
+            distances[v][size] = distance;
+            sizes[v] = size + 1;
+        }
+
+        // Returns true if v's label, joined with the root's label spread into
+        // rootDistance, gives a distance of at most bound.
+        boolean covers(int v, int[] rootDistance, int bound) {
+            int[] vHubs = hubs[v];
+            int[] vDistances = distances[v];
+            for (int i = 0; i < sizes[v]; i ++) {
+                int d = rootDistance[vHubs[i]];
+                if (d != Integer.MAX_VALUE && d + vDistances[i] <= bound) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Copies v's label into an array indexed by hub rank.
+        void spread(int v, int[] byRank) {
+            for (int i = 0; i < sizes[v]; i ++) {
+                byRank[hubs[v][i]] = distances[v][i];
+            }
+        }
+
+        // Undoes spread.
+        void unspread(int v, int[] byRank) {
+            for (int i = 0; i < sizes[v]; i ++) {
+                byRank[hubs[v][i]] = Integer.MAX_VALUE;
+            }
+        }
+
+        // Returns the offset of each vertex's label in the flat arrays.
+        int[] offsets() {
+            int[] offsets = new int[sizes.length + 1];
+            for (int v = 0; v < sizes.length; v ++) {
+                offsets[v + 1] = offsets[v] + sizes[v];
+            }
+            return offsets;
+        }
+
+        // Returns every label's hubs, one label after another.
+        int[] flatHubs() {
+            return flatten(hubs);
+        }
+
+        // Returns every label's distances, one label after another.
+        int[] flatDistances() {
+            return flatten(distances);
+        }
+
+        // Copies the used part of each vertex's array into one array.
+        private int[] flatten(int[][] labels) {
+            int[] offsets = offsets();
+            int[] flat = new int[offsets[sizes.length]];
+            for (int v = 0; v < sizes.length; v ++) {
+                if (sizes[v] > 0) {
+                    System.arraycopy(labels[v], 0, flat, offsets[v], sizes[v]);
+                }
+            }
+            return flat;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+* IncrementalRepairCheck compares the repaired shortest-path trees and distance
+* matrices with ones computed from scratch, on random graphs under random changes.
+*
+* Each graph, directed or undirected, gets a few trees grown forward from random
+* sources and a few grown backward into random targets, and a DistanceMatrix.
+* Links are then added and removed and vertices removed at random; after every
+* change the trees are repaired with edgeAdded, edgeRemoved or vertexRemoved, and
+* the matrix is replaced with withEdgeAdded, withEdgeRemoved or withVertexRemoved.
+* Every tree distance must then equal a fresh breadth-first search's, every tree
+* path must follow edges of the graph, every vertex whose distance changed must
+* be among those the repair reported, and every matrix entry must equal a fresh
+* DistanceSearch's.
+*
+* Usage: java IncrementalRepairCheck [graphs] [seed]
+* The exit status is 1 if any repair disagrees.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class IncrementalRepairCheck {
+    // Changes made to each graph.
+    private static final int CHANGES = 30;
+
+    // Trees kept for each graph: the first half forward, the rest backward.
+    private static final int TREES = 6;
+
+    /**
+    * Runs the comparison on the given number of random graphs and prints a summary.
+    */
+    public static void main(String[] args) {
+        int graphs = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 22;
+        Random random = new Random(seed);
+        int changes = 0;
+        int failures = 0;
+        for (int g = 0; g < graphs && failures == 0; g ++) {
+            boolean directed = g % 2 == 0;
+            int n = 2 + random.nextInt(60);
+            MysteryUnweightedGraphImplementation graph =
+                new MysteryUnweightedGraphImplementation(directed, n);
+            int m = random.nextInt(n * (1 + random.nextInt(4)));
+            for (int i = 0; i < m; i ++) {
+                graph.addEdge(random.nextInt(n), random.nextInt(n));
+            }
+            BreadthFirstSearch search = new BreadthFirstSearch(graph);
+            ShortestPathTree[] trees = new ShortestPathTree[TREES];
+            for (int i = 0; i < TREES; i ++) {
+                int root = random.nextInt(n);
+                trees[i] = i < TREES / 2 ? search.shortestPathTree(root)
+                                         : search.reverseShortestPathTree(root);
+            }
+            DistanceMatrix matrix = DistanceMatrix.compute(graph);
+            BitSet removed = new BitSet();
+
+            for (int c = 0; c < CHANGES && failures == 0; c ++) {
+                int[][] before = new int[TREES][];
+                for (int i = 0; i < TREES; i ++) {
+                    before[i] = distances(trees[i], n);
+                }
+                int[][] changed = new int[TREES][];
+                int u = random.nextInt(n);
+                int v = random.nextInt(n);
+                int kind = random.nextInt(20);
+                String change;
+                if (kind < 3) {
+                    if (removed.get(u)) {
+                        continue;
+                    }
+                    int[] outNeighbors = new int[graph.getDegree(u)];
+                    graph.copyNeighbors(u, outNeighbors);
+                    int[] inNeighbors = new int[graph.getInDegree(u)];
+                    graph.copyInNeighbors(u, inNeighbors);
+                    graph.removeVertex(u);
+                    removed.set(u);
+                    for (int i = 0; i < TREES; i ++) {
+                        changed[i] = trees[i].vertexRemoved(graph, u, outNeighbors, inNeighbors);
+                    }
+                    matrix = matrix.withVertexRemoved(graph, u);
+                    change = "remove vertex " + u;
+                } else if (kind < 13) {
+                    if (removed.get(u) || removed.get(v) || !graph.addEdge(u, v)) {
+                        continue;
+                    }
+                    for (int i = 0; i < TREES; i ++) {
+                        changed[i] = trees[i].edgeAdded(graph, u, v);
+                    }
+                    matrix = matrix.withEdgeAdded(graph, u, v);
+                    change = "add " + u + " -> " + v;
+                } else {
+                    if (!graph.removeEdge(u, v)) {
+                        continue;
+                    }
+                    for (int i = 0; i < TREES; i ++) {
+                        changed[i] = trees[i].edgeRemoved(graph, u, v);
+                    }
+                    matrix = matrix.withEdgeRemoved(graph, u, v);
+                    change = "remove " + u + " -> " + v;
+                }
+                changes ++;
+
+                String where = (directed ? "directed" : "undirected") + " graph " + g + " with "
+                               + n + " vertices, after " + change + ": ";
+                for (int i = 0; i < TREES; i ++) {
+                    String problem = checkTree(graph, search, trees[i], removed, before[i],
+                                               changed[i]);
+                    if (problem != null) {
+                        System.out.println(where + problem);
+                        failures ++;
+                    }
+                }
+                String problem = checkMatrix(graph, matrix);
+                if (problem != null) {
+                    System.out.println(where + problem);
+                    failures ++;
+                }
+            }
+        }
+        System.out.println(changes + " changes on " + graphs + " graphs, " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Compares a repaired tree with a fresh one; returns a description of the
+    // first difference, or null if there is none.
+    private static String checkTree(Graph graph, BreadthFirstSearch search, ShortestPathTree tree,
+                                    BitSet removed, int[] before, int[] changed) {
+        int n = graph.numVerts();
+        int root = tree.getSource();
+        String name = (tree.isReversed() ? "tree into " : "tree from ") + root;
+        int[] expected = new int[n];
+        if (removed.get(root)) {
+            Arrays.fill(expected, -1);
+        } else {
+            expected = distances(tree.isReversed() ? search.reverseShortestPathTree(root)
+                                                   : search.shortestPathTree(root), n);
+        }
+        BitSet reported = new BitSet();
+        for (int v : changed) {
+            reported.set(v);
+        }
+        for (int v = 0; v < n; v ++) {
+            int distance = tree.getShortestPathLength(v);
+            if (distance != expected[v]) {
+                return name + " has distance " + distance + " to " + v + ", expected "
+                       + expected[v];
+            }
+            if (distance != before[v] && !reported.get(v)) {
+                return name + " did not report the change at " + v;
+            }
+            int[] path = tree.getShortestPath(v);
+            int first = tree.isReversed() ? v : root;
+            int last = tree.isReversed() ? root : v;
+            boolean valid = distance < 0 ? path.length == 0
+                : path.length == distance + 1 && path[0] == first && path[distance] == last;
+            for (int i = 0; valid && i + 1 < path.length; i ++) {
+                valid = graph.hasEdge(path[i], path[i + 1]);
+            }
+            if (!valid) {
+                return name + " has path " + Arrays.toString(path) + " for " + v;
+            }
+        }
+        return null;
+    }
+
+    // Compares a repaired matrix with fresh searches; returns a description of
+    // the first difference, or null if there is none.
+    private static String checkMatrix(Graph graph, DistanceMatrix matrix) {
+        DistanceSearch search = new DistanceSearch(graph);
+        for (int s = 0; s < graph.numVerts(); s ++) {
+            int[] expected = search.distances(s);
+            for (int t = 0; t < expected.length; t ++) {
+                if (matrix.getDistance(s, t) != expected[t]) {
+                    return "matrix has distance " + matrix.getDistance(s, t) + " from " + s
+                           + " to " + t + ", expected " + expected[t];
+                }
+            }
+        }
+        return null;
+    }
+
+    // Returns the tree's distance to or from every vertex.
+    private static int[] distances(ShortestPathTree tree, int n) {
+        int[] distance = new int[n];
+        for (int v = 0; v < n; v ++) {
+            distance[v] = tree.getShortestPathLength(v);
+        }
+        return distance;
+    }
+}
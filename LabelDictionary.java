@@ -0,0 +1,263 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+* LabelDictionary maps article names to dense IDs, 0 through size() - 1, in the
+* order the names were added, and back again.
+*
+* Names are kept in one array indexed by ID, and the reverse mapping is an
+* open-addressing hash table of IDs that compares probes against that array, so
+* each name costs one array slot and at most two table slots on top of the
+* String itself, with no boxed keys or map entries. A removed name can no longer
+* be looked up, but its ID is never given out again.
+*
+* Adding names is not thread-safe, but once all names are added, any number of
+* threads may look them up at once.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class LabelDictionary {
+    // names[id] is the name with that ID.
+    private String[] names;
+    private int size;
+
+    // The IDs that have been removed, and the number of names that can still
+    // be looked up.
+    private BitSet removed;
+    private int liveSize;
+
+    // slots[i] is one more than the ID whose name hashes to slot i (after
+    // linear probing), or 0 if the slot is empty. At most half the slots are
+    // in use.
+    private int[] slots;
+
+    /**
+    * Constructs an empty dictionary.
+    */
+    public LabelDictionary() {
+        names = new String[16];
+        slots = new int[32];
+        size = 0;
+        removed = new BitSet();
+        liveSize = 0;
+    }
+
+    /**
+    * Constructs a dictionary holding the given names, with IDs in list order.
+    * @param names the names to add
+    */
+    public LabelDictionary(List<String> names) {
+        this();
+        for (String name : names) {
+            add(name);
+        }
+    }
+
+    /**
+    * Constructs a dictionary with the same names and IDs as another, including its
+    * removals. Later changes to either do not affect the other.
+    * @param other the dictionary to copy
+    */
+    public LabelDictionary(LabelDictionary other) {
+        names = other.names.clone();
+        slots = other.slots.clone();
+        size = other.size;
+        removed = (BitSet) other.removed.clone();
+        liveSize = other.liveSize;
+    }
+
+    /**
+    * Adds a name and gives it the next ID. If the name is already present,
+    * lookups by name return the new ID from now on, but the old ID keeps its name.
+    * @param name the name to add
+    * @return the new ID
+    */
+    public int add(String name) {
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, 2 * size);
+        }
+        int id = size;
+        names[id] = name;
+        size ++;
+        if (2 * size > slots.length) {
+            // Keeps the table at most half full, rehashing every ID it holds.
+            int[] old = slots;
+            slots = new int[2 * slots.length];
+            for (int slot : old) {
+                if (slot != 0) {
+                    insert(slot - 1);
+                }
+            }
+        }
+        if (insert(id)) {
+            liveSize ++;
+        }
+        return id;
+    }
+
+    /**
+    * Removes a name, so that looking it up finds nothing. Its ID is not reused
+    * and keeps the name, so getName and asList are unchanged.
+    * @param name the name to remove
+    * @return the ID the name had, or -1 if it was not present
+    */
+    public int remove(String name) {
+        int id = getId(name);
+        if (id >= 0) {
+            removeId(id);
+        }
+        return id;
+    }
+
+    /**
+    * Marks an ID as removed. If its name still looks up to it, the name is
+    * removed too; if a later ID has taken the name over, that one is kept.
+    * @param id an ID between 0 and size() - 1
+    * @return false if the ID was already removed
+    */
+    public boolean removeId(int id) {
+        String name = getName(id);
+        if (removed.get(id)) {
+            return false;
+        }
+        removed.set(id);
+        int mask = slots.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        while (slots[slot] != 0 && !names[slots[slot] - 1].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        if (slots[slot] != id + 1) {
+            return true;
+        }
+
+        // Empties the slot, then moves back any later ID in the same run that
+        // could no longer be found past the gap.
+        slots[slot] = 0;
+        liveSize --;
+        int gap = slot;
+        for (int next = (slot + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int home = mix(names[slots[next] - 1].hashCode()) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                slots[gap] = slots[next];
+                slots[next] = 0;
+                gap = next;
+            }
+        }
+        return true;
+    }
+
+    /**
+    * Returns true if the ID has been removed.
+    * @param id an ID between 0 and size() - 1
+    * @return whether the ID was removed
+    */
+    public boolean isRemoved(int id) {
+        getName(id);
+        return removed.get(id);
+    }
+
+    /**
+    * Returns the removed IDs, in increasing order.
+    * @return the removed IDs
+    */
+    public int[] getRemovedIds() {
+        return removed.stream().toArray();
+    }
+
+    /**
+    * Returns the ID of a name, or -1 if the name is not present.
+    * @param name the name to look up
+    * @return the ID of the name
+    */
+    public int getId(String name) {
+        int mask = slots.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (names[id].equals(name)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+    * Returns true if the name is present.
+    * @param name the name to look up
+    * @return whether the name has an ID
+    */
+    public boolean contains(String name) {
+        return getId(name) >= 0;
+    }
+
+    /**
+    * Returns the name with the given ID.
+    * @param id an ID between 0 and size() - 1
+    * @return the name
+    */
+    public String getName(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No label with ID " + id);
+        }
+        return names[id];
+    }
+
+    /**
+    * Returns the number of names, which is also the next ID to be given out.
+    * @return number of names
+    */
+    public int size() {
+        return size;
+    }
+
+    /**
+    * Returns the number of names that can be looked up: those neither removed
+    * nor taken over by a later ID with the same name.
+    * @return number of live names
+    */
+    public int liveSize() {
+        return liveSize;
+    }
+
+    /**
+    * Returns a read-only view of the names in ID order, which follows later
+    * additions.
+    * @return the names as a list
+    */
+    public List<String> asList() {
+        return new AbstractList<String>() {
+            public String get(int id) {
+                return getName(id);
+            }
+
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // Puts an ID into the slot for its name, replacing the ID of an equal name
+    // if there is one; returns false if it replaced one.
+    private boolean insert(int id) {
+        int mask = slots.length - 1;
+        int slot = mix(names[id].hashCode()) & mask;
+        while (slots[slot] != 0 && !names[slots[slot] - 1].equals(names[id])) {
+            slot = (slot + 1) & mask;
+        }
+        boolean empty = slots[slot] == 0;
+        slots[slot] = id + 1;
+        return empty;
+    }
+
+    // Spreads the high bits of a hash code into the low bits the table uses.
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,269 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+* LandmarkOracle bounds the hop distance between any two vertices using the
+* distances to and from a few landmark vertices, in the manner of the ALT
+* algorithm of Goldberg and Harrelson.
+*
+* For each landmark L the oracle keeps d(L, v) and d(v, L) for every vertex v,
+* from a breadth-first search out of L and one into L. By the triangle
+* inequality, d(s, t) is at least d(L, t) - d(L, s) and at least
+* d(s, L) - d(t, L), and at most d(s, L) + d(L, t). A vertex's distances for all
+* landmarks are stored side by side, so that computing a bound reads two short
+* runs of memory. The shortest-path trees they came from are kept as well, so
+* that the distances can be repaired when a link is added or removed rather than
+* searched for again. With k landmarks this costs 24k bytes per vertex, far less
+* than an all-pairs DistanceMatrix on a large graph; and the bounds guide
+* LandmarkSearch to exact answers.
+*
+* Landmarks are the k vertices with the most links, in and out, since on a
+* small-world graph most shortest paths pass close to a hub. Once built, the
+* oracle may be read from any number of threads at once; it describes the graph
+* as it was when built, or when last repaired by edgeAdded or edgeRemoved.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class LandmarkOracle {
+    /** The number of landmarks used when none is given. */
+    public static final int DEFAULT_LANDMARKS = 16;
+
+    // The landmark vertices.
+    private final int[] landmarks;
+
+    // The number of vertices.
+    private final int n;
+
+    // fromLandmark[v * k + i] is d(landmarks[i], v), and toLandmark[v * k + i]
+    // is d(v, landmarks[i]), where k is the number of landmarks and -1 means
+    // no path.
+    private final int[] fromLandmark;
+    private final int[] toLandmark;
+
+    // fromTrees[i] is grown from landmarks[i] over out-links, and toTrees[i]
+    // into landmarks[i] over in-links. Both are null in a read-only copy.
+    private final ShortestPathTree[] fromTrees;
+    private final ShortestPathTree[] toTrees;
+
+    /**
+    * Builds an oracle for the given graph with up to k landmarks, running two
+    * breadth-first searches per landmark.
+    * @param graph the graph
+    * @param k the number of landmarks; fewer are used if the graph is smaller
+    */
+    public LandmarkOracle(final Graph graph, int k) {
+        n = graph.numVerts();
+        if (k < 1) {
+            throw new IllegalArgumentException("Need at least one landmark");
+        }
+        Integer[] byDegree = new Integer[n];
+        for (int v = 0; v < n; v ++) {
+            byDegree[v] = v;
+        }
+        Arrays.sort(byDegree, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(linkCount(graph, b), linkCount(graph, a));
+            }
+        });
+        k = Math.min(k, n);
+        landmarks = new int[k];
+        fromLandmark = new int[n * k];
+        toLandmark = new int[n * k];
+        fromTrees = new ShortestPathTree[k];
+        toTrees = new ShortestPathTree[k];
+        BreadthFirstSearch search = new BreadthFirstSearch(graph);
+        for (int i = 0; i < k; i ++) {
+            landmarks[i] = byDegree[i];
+            fromTrees[i] = search.shortestPathTree(landmarks[i]);
+            toTrees[i] = search.reverseShortestPathTree(landmarks[i]);
+            for (int v = 0; v < n; v ++) {
+                fromLandmark[v * k + i] = fromTrees[i].getShortestPathLength(v);
+                toLandmark[v * k + i] = toTrees[i].getShortestPathLength(v);
+            }
+        }
+    }
+
+    // Constructs a read-only copy of the given oracle's distances, without the
+    // trees needed to repair them.
+    private LandmarkOracle(LandmarkOracle source) {
+        n = source.n;
+        landmarks = source.landmarks.clone();
+        fromLandmark = source.fromLandmark.clone();
+        toLandmark = source.toLandmark.clone();
+        fromTrees = null;
+        toTrees = null;
+    }
+
+    /**
+    * Returns a copy of the bounds as they are now, which later repairs of this
+    * oracle do not affect. The copy costs one pass over the distances rather than
+    * two searches per landmark, but cannot be repaired itself.
+    * @return the read-only copy
+    */
+    LandmarkOracle freeze() {
+        return new LandmarkOracle(this);
+    }
+
+    /**
+    * Returns the number of vertices the oracle covers.
+    * @return number of vertices in the graph when the oracle was built
+    */
+    public int numVerts() {
+        return n;
+    }
+
+    /**
+    * Returns the landmark vertices, most linked first.
+    * @return IDs of the landmarks
+    */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+    * Repairs the distances after an edge from begin to end was added to the graph.
+    * The landmarks stay the same. Not safe while other threads read the oracle.
+    * @param graph the graph the oracle was built for, with the edge added
+    * @param begin ID of the vertex the edge leaves
+    * @param end ID of the vertex the edge enters
+    * @throws UnsupportedOperationException if the oracle is a read-only copy
+    */
+    void edgeAdded(Graph graph, int begin, int end) {
+        checkRepairable();
+        for (int i = 0; i < landmarks.length; i ++) {
+            copyDistances(fromTrees[i], fromLandmark, i,
+                          fromTrees[i].edgeAdded(graph, begin, end));
+            copyDistances(toTrees[i], toLandmark, i, toTrees[i].edgeAdded(graph, begin, end));
+        }
+    }
+
+    /**
+    * Repairs the distances after the edge from begin to end was removed from the
+    * graph. The landmarks stay the same. Not safe while other threads read the
+    * oracle.
+    * @param graph the graph the oracle was built for, with the edge removed
+    * @param begin ID of the vertex the edge left
+    * @param end ID of the vertex the edge entered
+    * @throws UnsupportedOperationException if the oracle is a read-only copy
+    */
+    void edgeRemoved(Graph graph, int begin, int end) {
+        checkRepairable();
+        for (int i = 0; i < landmarks.length; i ++) {
+            copyDistances(fromTrees[i], fromLandmark, i,
+                          fromTrees[i].edgeRemoved(graph, begin, end));
+            copyDistances(toTrees[i], toLandmark, i, toTrees[i].edgeRemoved(graph, begin, end));
+        }
+    }
+
+    /**
+    * Repairs the distances after a vertex was removed from the graph. If it was a
+    * landmark, that landmark no longer bounds anything. Not safe while other
+    * threads read the oracle.
+    * @param graph the graph the oracle was built for, with the vertex removed
+    * @param v ID of the removed vertex
+    * @param outNeighbors the vertices v had links to
+    * @param inNeighbors the vertices that had links to v
+    * @throws UnsupportedOperationException if the oracle is a read-only copy
+    */
+    void vertexRemoved(Graph graph, int v, int[] outNeighbors, int[] inNeighbors) {
+        checkRepairable();
+        for (int i = 0; i < landmarks.length; i ++) {
+            copyDistances(fromTrees[i], fromLandmark, i,
+                          fromTrees[i].vertexRemoved(graph, v, outNeighbors, inNeighbors));
+            copyDistances(toTrees[i], toLandmark, i,
+                          toTrees[i].vertexRemoved(graph, v, outNeighbors, inNeighbors));
+        }
+    }
+
+    /**
+    * Returns a lower bound on the number of edges on a shortest path from source
+    * to target, or -1 if the landmarks prove that no path exists.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return lower bound on the length of shortest path
+    */
+    public int getLowerBound(int source, int target) {
+        checkVertex(source);
+        checkVertex(target);
+        int k = landmarks.length;
+        int bound = 0;
+        for (int i = 0; i < k; i ++) {
+            int fromSource = fromLandmark[source * k + i];
+            int fromTarget = fromLandmark[target * k + i];
+            if (fromSource >= 0) {
+                if (fromTarget < 0) {
+                    // L reaches source but not target, so source cannot
+                    // reach target either.
+                    return -1;
+                }
+                bound = Math.max(bound, fromTarget - fromSource);
+            }
+            int sourceTo = toLandmark[source * k + i];
+            int targetTo = toLandmark[target * k + i];
+            if (targetTo >= 0) {
+                if (sourceTo < 0) {
+                    // target reaches L but source does not, so source cannot
+                    // reach target.
+                    return -1;
+                }
+                bound = Math.max(bound, sourceTo - targetTo);
+            }
+        }
+        return bound;
+    }
+
+    /**
+    * Returns an upper bound on the number of edges on a shortest path from source
+    * to target: the length of the shortest path through some landmark, or -1 if
+    * no landmark lies on any path from source to target.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return upper bound on the length of shortest path, or -1
+    */
+    public int getUpperBound(int source, int target) {
+        checkVertex(source);
+        checkVertex(target);
+        if (source == target) {
+            return 0;
+        }
+        int k = landmarks.length;
+        int bound = -1;
+        for (int i = 0; i < k; i ++) {
+            int toL = toLandmark[source * k + i];
+            int fromL = fromLandmark[target * k + i];
+            if (toL >= 0 && fromL >= 0 && (bound < 0 || toL + fromL < bound)) {
+                bound = toL + fromL;
+            }
+        }
+        return bound;
+    }
+
+    // Copies the distances of the given vertices from landmark i's tree into
+    // the vertex-major array.
+    private void copyDistances(ShortestPathTree tree, int[] distances, int i, int[] vertices) {
+        int k = landmarks.length;
+        for (int v : vertices) {
+            distances[v * k + i] = tree.getShortestPathLength(v);
+        }
+    }
+
+    // Throws UnsupportedOperationException if this is a read-only copy.
+    private void checkRepairable() {
+        if (fromTrees == null) {
+            throw new UnsupportedOperationException("Oracle is a read-only copy");
+        }
+    }
+
+    // Throws IndexOutOfBoundsException if v is not a vertex of the graph.
+    private void checkVertex(int v) {
+        if (v < 0 || v >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    // Returns the number of links into and out of v.
+    private static int linkCount(Graph graph, int v) {
+        return graph.getDegree(v) + graph.getInDegree(v);
+    }
+}
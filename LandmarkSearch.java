@@ -0,0 +1,224 @@
+import java.util.Arrays;
+/**
+ * A reusable A* search engine that finds exact shortest paths, guided by the
+ * lower bounds of a LandmarkOracle.  Vertices are expanded in order of the
+ * hops taken to reach them plus the oracle's lower bound on the hops still
+ * to go, so the search heads towards the target instead of spreading out
+ * evenly, and vertices the oracle proves cannot reach the target are never
+ * expanded at all.
+ *   Landmark bounds are consistent (they change by at most one across a
+ * link), so the first time a vertex leaves the queue its distance is final,
+ * and the search stops as soon as the target does.
+ *   As with the other engines, all search state lives in arrays reused
+ * between queries, and an engine is not safe for use by more than one thread
+ * at a time.  The oracle must describe the graph as it currently is.
+ *
+ * @author Yitong Chen
+ * @author Anton Nagy
+ */
+public class LandmarkSearch {
+    private static final int TIE_BITS = 8;
+    private static final int MAX_TIE = (1 << TIE_BITS) - 1;
+
+    // The graph being searched, and the oracle bounding its distances.
+    private final Graph graph;
+    private final LandmarkOracle oracle;
+
+    // A binary min-heap of entries (priority << 32 | vertex); a vertex may be
+    // in it more than once, and entries that no longer match its distance
+    // are skipped when they come out.  The priority is the estimated path
+    // length above TIE_BITS bits of MAX_TIE minus the distance, so that among
+    // equal estimates the vertex furthest along comes out first.
+    private long[] heap;
+    private int heapSize;
+
+    // distance[v] and predecessor[v] are the best known distance to v and the
+    // vertex it was reached from; bound[v] caches the oracle's lower bound
+    // from v to the target.  All three are only meaningful if seen[v] is the
+    // current epoch, and v is final once done[v] is.
+    private int[] distance;
+    private int[] predecessor;
+    private int[] bound;
+    private int[] seen;
+    private int[] done;
+    private int epoch;
+
+    // The number of vertices expanded by the last query.
+    private int expanded;
+
+    // Scratch array each vertex's neighbors are copied into.
+    private int[] neighborBuffer;
+
+    /**
+    * Constructs a search engine for the given graph and its oracle.
+    * @param graph the graph to search
+    * @param oracle landmark bounds for the graph
+    */
+    public LandmarkSearch(Graph graph, LandmarkOracle oracle) {
+        this.graph = graph;
+        this.oracle = oracle;
+        heap = new long[16];
+        distance = new int[0];
+        predecessor = new int[0];
+        bound = new int[0];
+        seen = new int[0];
+        done = new int[0];
+        neighborBuffer = new int[0];
+        epoch = 0;
+    }
+
+    /**
+    * Returns the vertex IDs on a shortest path from source to target, with source
+    * at position 0 and target in the final position. If source and target are the
+    * same, the path is just that vertex. If no path exists, returns an empty array.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return IDs of the vertices on the shortest path
+    */
+    public int[] shortestPath(int source, int target) {
+        int length = shortestPathLength(source, target);
+        int[] path = new int[length + 1];
+        int v = target;
+        for (int i = length; i >= 0; i --) {
+            path[i] = v;
+            v = predecessor[v];
+        }
+        return path;
+    }
+
+    /**
+    * Returns the number of edges on a shortest path from source to target, 0 if
+    * they are the same vertex, or -1 if no path exists.
+    * @param source ID of the starting vertex
+    * @param target ID of the ending vertex
+    * @return length of shortest path
+    */
+    public int shortestPathLength(int source, int target) {
+        int n = graph.numVerts();
+        if (source < 0 || source >= n || target < 0 || target >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+        startQuery();
+        expanded = 0;
+        if (!discover(source, 0, -1, target)) {
+            return -1;
+        }
+
+        while (heapSize > 0) {
+            long entry = poll();
+            int u = (int) entry;
+            int priority = (int) (entry >>> 32);
+            if (done[u] == epoch || priority != priority(distance[u], bound[u])) {
+                continue;
+            }
+            done[u] = epoch;
+            if (u == target) {
+                return distance[u];
+            }
+            expanded ++;
+
+            int degree = graph.getDegree(u);
+            if (neighborBuffer.length < degree) {
+                neighborBuffer = new int[degree];
+            }
+            graph.copyNeighbors(u, neighborBuffer);
+            for (int i = 0; i < degree; i ++) {
+                int w = neighborBuffer[i];
+                if (done[w] != epoch && (seen[w] != epoch || distance[u] + 1 < distance[w])) {
+                    discover(w, distance[u] + 1, u, target);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+    * Returns the number of vertices the last query expanded, for comparing the
+    * work done against that of a plain breadth-first search.
+    * @return number of vertices expanded
+    */
+    public int getExpandedCount() {
+        return expanded;
+    }
+
+    // Records that v can be reached in d hops from the given predecessor and
+    // queues it, unless the oracle proves v cannot reach the target.  Returns
+    // false if it was pruned.
+    private boolean discover(int v, int d, int from, int target) {
+        if (seen[v] != epoch) {
+            seen[v] = epoch;
+            bound[v] = oracle.getLowerBound(v, target);
+        }
+        if (bound[v] < 0) {
+            return false;
+        }
+        distance[v] = d;
+        predecessor[v] = from;
+        offer(((long) priority(d, bound[v]) << 32) | v);
+        return true;
+    }
+
+    // Returns the heap priority of a vertex d hops from the source whose
+    // lower bound to the target is b.
+    private static int priority(int d, int b) {
+        if (d + b > Integer.MAX_VALUE >>> TIE_BITS) {
+            throw new IllegalStateException("Path too long for a landmark search: " + (d + b));
+        }
+        return ((d + b) << TIE_BITS) | (MAX_TIE - Math.min(d, MAX_TIE));
+    }
+
+    // Adds an entry to the heap.
+    private void offer(long entry) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * heapSize);
+        }
+        int i = heapSize ++;
+        while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+            heap[i] = heap[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        heap[i] = entry;
+    }
+
+    // Removes and returns the smallest entry of the heap.
+    private long poll() {
+        long top = heap[0];
+        long last = heap[-- heapSize];
+        int i = 0;
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child ++;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    // Grows the arrays if the graph has grown, empties the heap, and moves on
+    // to a fresh epoch so that nothing from earlier queries counts as seen.
+    private void startQuery() {
+        int n = graph.numVerts();
+        if (seen.length < n) {
+            distance = new int[n];
+            predecessor = new int[n];
+            bound = new int[n];
+            seen = new int[n];
+            done = new int[n];
+            epoch = 0;
+        }
+        heapSize = 0;
+        epoch ++;
+        if (epoch == Integer.MAX_VALUE) {
+            // Stamps from 2^31 queries ago would look current; start over.
+            Arrays.fill(seen, 0);
+            Arrays.fill(done, 0);
+            epoch = 1;
+        }
+    }
+}
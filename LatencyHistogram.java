@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+* LatencyHistogram counts durations in logarithmic buckets, so that percentiles
+* can be read off at any time in constant memory. Each power of two of
+* microseconds is split into 8 equal sub-buckets, which bounds the error of a
+* reported percentile to 1/8 of its value.
+*
+* Recording is lock-free, so any number of threads may record into one
+* histogram at once.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class LatencyHistogram {
+    // Sub-buckets per power of two; must itself be a power of two.
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BUCKET_BITS = 3;
+
+    // Enough powers of two for any duration in microseconds that fits a long.
+    private static final int POWERS = 64 - SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong total;
+    private final AtomicLong maxMicros;
+
+    /**
+    * Constructs an empty histogram.
+    */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray((POWERS + 1) * SUB_BUCKETS);
+        total = new AtomicLong();
+        maxMicros = new AtomicLong();
+    }
+
+    /**
+    * Records one duration.
+    * @param nanos the duration in nanoseconds
+    */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        total.incrementAndGet();
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+    * Returns the number of durations recorded.
+    * @return count of recorded durations
+    */
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+    * Returns the longest duration recorded.
+    * @return maximum in microseconds
+    */
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+    * Returns an upper bound on the given percentile of the recorded durations,
+    * or 0 if nothing has been recorded.
+    * @param percentile between 0 and 100
+    * @return the percentile in microseconds
+    */
+    public long getPercentileMicros(double percentile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket ++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+    * Returns a one-line summary of the recorded durations.
+    */
+    public String toString() {
+        return "count = " + getCount() + ", p50 = " + getPercentileMicros(50)
+            + " us, p90 = " + getPercentileMicros(90) + " us, p99 = "
+            + getPercentileMicros(99) + " us, max = " + getMaxMicros() + " us";
+    }
+
+    // Durations below SUB_BUCKETS microseconds get a bucket each; above that,
+    // the bucket is chosen by the highest set bit and the next three bits.
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int power = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        int sub = (int) (micros >>> power) - SUB_BUCKETS;
+        return power * SUB_BUCKETS + SUB_BUCKETS + sub;
+    }
+
+    // Returns the largest duration that falls into the given bucket.
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int power = bucket / SUB_BUCKETS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << power) - 1;
+    }
+}
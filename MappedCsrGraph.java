@@ -0,0 +1,247 @@
+import java.nio.IntBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+/**
+ * An immutable implementation of the Unweighted Graph ADT that reads its
+ * Compressed Sparse Row arrays straight out of int buffers, typically views of
+ * a memory-mapped graph snapshot file (see GraphSnapshot).  The layout is the
+ * same as CsrUnweightedGraph's, but nothing is copied onto the heap, so a
+ * graph of any size opens in constant time and its pages are loaded by the
+ * operating system as they are touched.
+ *   Like CsrUnweightedGraph, this graph cannot change: addVertex, addEdge,
+ * removeEdge, removeVertex and clear all throw UnsupportedOperationException.
+ *   Any method that takes one or more vertex IDs as arguments may throw an
+ * IndexOutOfBoundsException if any input ID is out of bounds.
+ */
+public class MappedCsrGraph implements UnweightedGraph {
+    // Out-links and in-links, laid out as in CsrUnweightedGraph.  In an
+    // undirected graph the in-link buffers are the out-link buffers.
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer inOffsets;
+    private final IntBuffer sources;
+    private final boolean undirected;
+    // The number of edges, or -1 until first asked for.  An undirected graph
+    // stores a self-loop once but every other edge twice, so counting them
+    // means a pass over the targets, which is put off so that opening a
+    // graph stays constant time.  Racing threads compute the same value.
+    private int edgeCount;
+
+    /** Constructs a graph over the given buffers, which are read with
+     * absolute gets and never modified.  offsets and inOffsets hold N+1
+     * entries each.
+     */
+    public MappedCsrGraph(boolean directed, IntBuffer offsets, IntBuffer targets,
+                          IntBuffer inOffsets, IntBuffer sources) {
+        this.undirected = !directed;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.inOffsets = inOffsets;
+        this.sources = sources;
+        edgeCount = directed ? targets.limit() : -1;
+    }
+
+    /** Unsupported: a mapped graph cannot grow.
+     * @throws UnsupportedOperationException always.
+     */
+    public int addVertex() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: a mapped graph cannot grow.
+     * @throws UnsupportedOperationException always.
+     */
+    public boolean addEdge(int begin, int end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: a mapped graph cannot change.
+     * @throws UnsupportedOperationException always.
+     */
+    public boolean removeEdge(int begin, int end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: a mapped graph cannot change.
+     * @throws UnsupportedOperationException always.
+     */
+    public boolean removeVertex(int v) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported: a mapped graph cannot grow.
+     * @throws UnsupportedOperationException always.
+     */
+    public int addEdges(int[] begins, int[] ends, int count) {
+        throw new UnsupportedOperationException();
+    }
+
+    private void checkVertex(int v) {
+        if(v < 0 || v >= offsets.limit() - 1) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /** Checks whether an edge exists between two vertices.
+     * In an undirected graph, this returns the same as hasEdge(end, begin).
+     * @return true if there is an edge from begin to end.
+     */
+    public boolean hasEdge(int begin, int end) {
+        checkVertex(begin);
+        checkVertex(end);
+        // Binary search over begin's sorted group of targets.
+        int l = offsets.get(begin);
+        int r = offsets.get(begin + 1) - 1;
+        while(l <= r) {
+            int m = l + (r-l)/2;
+            int v = targets.get(m);
+            if(v < end) {
+                l = m + 1;
+            } else if(v > end) {
+                r = m - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the out-degree of the specified vertex. */
+    public int getDegree(int v) {
+        checkVertex(v);
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+
+    /** Returns the in-degree of the specified vertex. */
+    public int getInDegree(int v) {
+        checkVertex(v);
+        return inOffsets.get(v + 1) - inOffsets.get(v);
+    }
+
+    /** Returns an iterable object that allows iteration over the neighbors of
+     * the specified vertex, in increasing order of ID.
+     */
+    public Iterable<Integer> getNeighbors(int v) {
+        checkVertex(v);
+        return slice(targets, offsets.get(v), offsets.get(v + 1));
+    }
+
+    /** Returns an iterable object that allows iteration over the in-neighbors
+     * of the specified vertex, in increasing order of ID.
+     */
+    public Iterable<Integer> getInNeighbors(int v) {
+        checkVertex(v);
+        return slice(sources, inOffsets.get(v), inOffsets.get(v + 1));
+    }
+
+    // Returns a read-only view of buffer[begin] through buffer[end - 1].
+    private static Iterable<Integer> slice(final IntBuffer buffer, final int begin, final int end) {
+        return new Iterable<Integer>() {
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int i = begin;
+                    public boolean hasNext() {
+                        return i < end;
+                    }
+                    public Integer next() {
+                        if(i >= end) {
+                            throw new NoSuchElementException();
+                        }
+                        return buffer.get(i++);
+                    }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /** Calls action.accept(u) for each neighbor u of the specified vertex, in
+     * increasing order of ID.
+     */
+    public void forEachNeighbor(int v, IntConsumer action) {
+        checkVertex(v);
+        int end = offsets.get(v + 1);
+        for(int i = offsets.get(v); i < end; i++) {
+            action.accept(targets.get(i));
+        }
+    }
+
+    /** Copies the neighbors of the specified vertex into dest, starting at
+     * index 0, in increasing order of ID.
+     * @return the number of neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getDegree(v).
+     */
+    public int copyNeighbors(int v, int[] dest) {
+        checkVertex(v);
+        return copy(targets, offsets.get(v), offsets.get(v + 1), dest);
+    }
+
+    /** Copies the in-neighbors of the specified vertex into dest, starting at
+     * index 0, in increasing order of ID.
+     * @return the number of in-neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getInDegree(v).
+     */
+    public int copyInNeighbors(int v, int[] dest) {
+        checkVertex(v);
+        return copy(sources, inOffsets.get(v), inOffsets.get(v + 1), dest);
+    }
+
+    // Copies buffer[begin] through buffer[end - 1] to the start of dest.
+    private static int copy(IntBuffer buffer, int begin, int end, int[] dest) {
+        int d = end - begin;
+        if(d > dest.length) {
+            throw new ArrayIndexOutOfBoundsException(d);
+        }
+        // Absolute gets leave the shared buffer's position alone, so this is
+        // safe from any thread.
+        for(int i = 0; i < d; i++) {
+            dest[i] = buffer.get(begin + i);
+        }
+        return d;
+    }
+
+    /** Returns the number of vertices in the graph. */
+    public int numVerts() {
+        return offsets.limit() - 1;
+    }
+
+    /** Returns the number of edges in the graph.
+     * The result does *not* double-count edges in undirected graphs.
+     */
+    public int numEdges() {
+        if(edgeCount < 0) {
+            int selfLoops = 0;
+            for(int v = 0; v < numVerts(); v++) {
+                for(int i = offsets.get(v); i < offsets.get(v + 1); i++) {
+                    if(targets.get(i) == v) {
+                        selfLoops++;
+                    }
+                }
+            }
+            edgeCount = (targets.limit() + selfLoops)/2;
+        }
+        return edgeCount;
+    }
+
+    /** Returns true if the graph is directed. */
+    public boolean isDirected() {
+        return !undirected;
+    }
+
+    /** Returns true if there are no vertices in the graph. */
+    public boolean isEmpty() {
+        return offsets.limit() == 1;
+    }
+
+    /** Unsupported: a mapped graph is immutable.
+     * @throws UnsupportedOperationException always.
+     */
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -1,12 +1,28 @@
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.function.IntConsumer;
 /**
  * An implementation of the Unweighted Graph ADT.  This class can
  * represent both directed and undirected graphs, but the choice must be made
  * at construction time, and is final.
  *   Technically, this implementation supports self-loops; it makes no effort to
  * prevent these.
+ *   A directed graph also keeps a sorted list of in-neighbors for every vertex,
+ * so in-degrees and in-neighbors cost no more to read than their outgoing
+ * counterparts.  In an undirected graph the two lists would be identical, so
+ * the same lists serve both purposes.
+ *   Removing a vertex leaves a tombstone: its ID is never reused, so the IDs
+ * of the other vertices stay put, and it simply has no edges from then on.
+ * Removal is lazy, costing time proportional to the vertex's own degree: the
+ * entries naming it in its neighbors' lists are left in place but skipped by
+ * every read, and counted per list so degrees stay cheap.  Those stale entries
+ * are swept out by an incremental compaction pass that rebuilds a few
+ * vertices' lists, trimmed to size, after every update, so long-running
+ * processes absorb deletions without ever pausing for a full rebuild; compact
+ * finishes the pass at once.
  *   Any method that takes one or more vertex IDs as arguments may throw an
  * IndexOutOfBoundsException if any input ID is out of bounds.
  * 
@@ -15,8 +31,30 @@ import java.util.ArrayList;
  */
 public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
     private List<List<Integer>> adj;
+    // radj.get(v) is the sorted list of vertices with an edge to v.  In an
+    // undirected graph, radj is the same object as adj.
+    private List<List<Integer>> radj;
     private final boolean undirected;
     
+    // The number of vertices whose lists each update compacts.
+    private static final int COMPACTION_STEP = 64;
+    
+    // removed.get(v) is true once v has been removed.
+    private BitSet removed;
+    // staleOut[v] and staleIn[v] count the entries in adj.get(v) and
+    // radj.get(v) that name removed vertices.  In an undirected graph, staleIn
+    // is the same array as staleOut.
+    private int[] staleOut;
+    private int[] staleIn;
+    // The total of all stale counts, and the next vertex the compaction pass
+    // will visit.
+    private int staleEntries;
+    private int compactionCursor;
+    
+    // The number of edges, kept up to date by every update so that numEdges
+    // need not walk the lists.  A self-loop counts once.
+    private int edgeCount;
+    
     /** Default constructor: an empty directed graph. */
     public MysteryUnweightedGraphImplementation() {
         this(true, 0);
@@ -31,8 +69,12 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
     public MysteryUnweightedGraphImplementation(boolean directed, int n) {
         adj = new ArrayList<List<Integer>>();
         undirected = !directed;
+        radj = undirected ? adj : new ArrayList<List<Integer>>();
+        removed = new BitSet();
+        staleOut = new int[Math.max(n, 16)];
+        staleIn = undirected ? staleOut : new int[staleOut.length];
         for(int i = 0; i < n; i++) {
-            adj.add(new ArrayList<Integer>());
+            addVertex();
         }
     }
     
@@ -41,9 +83,149 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
      */
     public int addVertex() {
         adj.add(new ArrayList<Integer>());
+        if(!undirected) {
+            radj.add(new ArrayList<Integer>());
+        }
+        if(adj.size() > staleOut.length) {
+            staleOut = Arrays.copyOf(staleOut, 2 * staleOut.length);
+            staleIn = undirected ? staleOut : Arrays.copyOf(staleIn, staleOut.length);
+        }
         return adj.size() - 1;
     }
     
+    /** Removes a vertex and all of its edges, leaving its ID in place with no
+     * edges.  Its ID is not given to any later vertex.
+     * @return false if the vertex was already removed.
+     */
+    public boolean removeVertex(int v) {
+        if(v < 0 || v >= adj.size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        if(removed.get(v)) {
+            return false;
+        }
+        // Every live neighbor's list still names v, and is now one entry
+        // staler; the stale entries in v's own lists go with them.
+        for(int w : adj.get(v)) {
+            if(removed.get(w)) {
+                staleEntries--;
+                continue;
+            }
+            edgeCount--;
+            if(w != v) {
+                staleIn[w]++;
+                staleEntries++;
+            }
+        }
+        if(!undirected) {
+            // A self-loop was counted with the out-links.
+            for(int w : radj.get(v)) {
+                if(removed.get(w)) {
+                    staleEntries--;
+                } else if(w != v) {
+                    edgeCount--;
+                    staleOut[w]++;
+                    staleEntries++;
+                }
+            }
+            radj.set(v, new ArrayList<Integer>(0));
+        }
+        adj.set(v, new ArrayList<Integer>(0));
+        staleOut[v] = 0;
+        staleIn[v] = 0;
+        removed.set(v);
+        compactSome();
+        return true;
+    }
+    
+    /** Returns true if the vertex has been removed. */
+    public boolean isRemoved(int v) {
+        if(v < 0 || v >= adj.size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        return removed.get(v);
+    }
+    
+    /** Returns the number of entries in the edge lists that still name removed
+     * vertices, waiting for compaction.
+     */
+    public int getStaleEntryCount() {
+        return staleEntries;
+    }
+    
+    /** Finishes the compaction pass at once, so that no edge list names a
+     * removed vertex.
+     */
+    public void compact() {
+        for(int v = 0; v < adj.size() && staleEntries > 0; v++) {
+            compactVertex(v);
+        }
+        compactionCursor = 0;
+    }
+    
+    // Takes the compaction pass COMPACTION_STEP vertices further, if there is
+    // anything to compact.
+    private void compactSome() {
+        for(int i = 0; i < COMPACTION_STEP && staleEntries > 0; i++) {
+            if(compactionCursor >= adj.size()) {
+                compactionCursor = 0;
+            }
+            compactVertex(compactionCursor++);
+        }
+    }
+    
+    // Rebuilds v's lists without their stale entries, in lists of exactly
+    // the right size.
+    private void compactVertex(int v) {
+        if(staleOut[v] > 0) {
+            adj.set(v, liveEntries(adj.get(v), adj.get(v).size() - staleOut[v]));
+            staleEntries -= staleOut[v];
+            staleOut[v] = 0;
+        }
+        if(!undirected && staleIn[v] > 0) {
+            radj.set(v, liveEntries(radj.get(v), radj.get(v).size() - staleIn[v]));
+            staleEntries -= staleIn[v];
+            staleIn[v] = 0;
+        }
+    }
+    
+    // Returns a new list of the entries of edges that name live vertices.
+    private List<Integer> liveEntries(List<Integer> edges, int live) {
+        List<Integer> entries = new ArrayList<Integer>(live);
+        for(int i = 0; i < edges.size(); i++) {
+            if(!removed.get(edges.get(i))) {
+                entries.add(edges.get(i));
+            }
+        }
+        return entries;
+    }
+    
+    // Copies the entries of edges that name live vertices into dest, and
+    // returns how many there were; stale is the number that do not.
+    private int copyLive(List<Integer> edges, int stale, int[] dest) {
+        int d = 0;
+        if(stale == 0) {
+            for(int i = 0; i < edges.size(); i++) {
+                dest[d++] = edges.get(i);
+            }
+        } else {
+            for(int i = 0; i < edges.size(); i++) {
+                int u = edges.get(i);
+                if(!removed.get(u)) {
+                    dest[d++] = u;
+                }
+            }
+        }
+        return d;
+    }
+    
+    // Throws IllegalArgumentException if v has been removed.
+    private void checkLive(int v) {
+        if(removed.get(v)) {
+            throw new IllegalArgumentException("Vertex " + v + " has been removed");
+        }
+    }
+    
     // The return value, which we'll call i, indicates the presence or absence
     // of an edge in the list "edges" whose endpoint is "goal".
     //   If i >= 0, edges.get(i) is the desired edge.
@@ -71,12 +253,16 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
     /** Adds an edge between two vertices.
      * In an undirected graph, this has the same effect as addEdge(end, begin).
      * @return false if the edge was already in the graph.
+     * @throws IllegalArgumentException if either vertex has been removed.
      */
     public boolean addEdge(int begin, int end) {
-        List<Integer> edges = adj.get(begin);
-        if(edges == null || end < 0 || end >= adj.size()) {
+        if(begin < 0 || begin >= adj.size() || end < 0 || end >= adj.size()) {
             throw new IndexOutOfBoundsException();
         }
+        checkLive(begin);
+        checkLive(end);
+        compactSome();
+        List<Integer> edges = adj.get(begin);
         int i = findEdge(edges, end);
         if(i >= 0) {
             // This edge is already in the graph.
@@ -93,10 +279,156 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
             // have to check.
             i = findEdge(adj.get(end), begin);
             adj.get(end).add(-i-1, new Integer(begin));
+        } else if(!undirected) {
+            // Record the edge in end's in-neighbor list too.  As above, it
+            // cannot already be there.
+            i = findEdge(radj.get(end), begin);
+            radj.get(end).add(-i-1, Integer.valueOf(begin));
+        }
+        edgeCount++;
+        return true;
+    }
+    
+    /** Removes the edge between two vertices.
+     * In an undirected graph, this has the same effect as removeEdge(end, begin).
+     * @return false if the edge was not in the graph.
+     */
+    public boolean removeEdge(int begin, int end) {
+        if(begin < 0 || begin >= adj.size() || end < 0 || end >= adj.size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        if(removed.get(begin) || removed.get(end)) {
+            // A removed vertex has no edges, whatever its neighbors' stale
+            // entries say.
+            return false;
+        }
+        compactSome();
+        List<Integer> edges = adj.get(begin);
+        int i = findEdge(edges, end);
+        if(i < 0) {
+            // This edge is not in the graph.
+            return false;
         }
+        edges.remove(i);
+        if(undirected && (begin != end)) {
+            // Remove the edge in the other direction too; as in addEdge, it
+            // must be there.
+            i = findEdge(adj.get(end), begin);
+            adj.get(end).remove(i);
+        } else if(!undirected) {
+            i = findEdge(radj.get(end), begin);
+            radj.get(end).remove(i);
+        }
+        edgeCount--;
         return true;
     }
     
+    /** Adds a batch of edges: the i-th edge runs from begins[i] to ends[i],
+     * for i less than count.  The result is the same as calling addEdge on
+     * each, but rather than inserting the edges one at a time, which shifts
+     * the tail of an edge list for every insertion, this groups the batch by
+     * vertex, sorts each group, and merges it into the vertex's list in one
+     * pass.
+     * @return the number of edges that were not already in the graph.
+     * @throws IndexOutOfBoundsException if any vertex ID is out of bounds, in
+     *     which case no edges are added.
+     * @throws IllegalArgumentException if any vertex has been removed, in which
+     *     case no edges are added.
+     */
+    public int addEdges(int[] begins, int[] ends, int count) {
+        int n = adj.size();
+        for(int i = 0; i < count; i++) {
+            if(begins[i] < 0 || begins[i] >= n || ends[i] < 0 || ends[i] >= n) {
+                throw new IndexOutOfBoundsException();
+            }
+        }
+        for(int i = 0; i < count; i++) {
+            checkLive(begins[i]);
+            checkLive(ends[i]);
+        }
+        compactSome();
+        if(undirected) {
+            // Every edge goes into both endpoints' lists; count each one in
+            // the list of its lower endpoint only.
+            int[] buf = new int[2*count];
+            int[] start = groupBy(n, begins, ends, count, true, buf);
+            int added = mergeGroups(adj, start, buf, true);
+            edgeCount += added;
+            return added;
+        }
+        int[] buf = new int[count];
+        int[] start = groupBy(n, begins, ends, count, false, buf);
+        int added = mergeGroups(adj, start, buf, false);
+        start = groupBy(n, ends, begins, count, false, buf);
+        mergeGroups(radj, start, buf, false);
+        edgeCount += added;
+        return added;
+    }
+    
+    // Counting-sorts the pairs (keys[i], values[i]) by key, writing the values
+    // into buf so that those for key v run from start[v] to start[v+1] - 1,
+    // and returns start.  If symmetric, each pair with distinct members is
+    // also entered the other way around.
+    private static int[] groupBy(int n, int[] keys, int[] values, int count,
+                                 boolean symmetric, int[] buf) {
+        int[] start = new int[n + 1];
+        for(int i = 0; i < count; i++) {
+            start[keys[i] + 1]++;
+            if(symmetric && keys[i] != values[i]) {
+                start[values[i] + 1]++;
+            }
+        }
+        for(int v = 0; v < n; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] next = Arrays.copyOf(start, n);
+        for(int i = 0; i < count; i++) {
+            buf[next[keys[i]]++] = values[i];
+            if(symmetric && keys[i] != values[i]) {
+                buf[next[values[i]]++] = keys[i];
+            }
+        }
+        return start;
+    }
+    
+    // Sorts each group of new neighbors and merges it into the matching sorted
+    // list, dropping duplicates.  Returns the number of neighbors added; if
+    // lowerOnly, a neighbor u of v is only counted when v <= u.
+    private static int mergeGroups(List<List<Integer>> lists, int[] start, int[] buf,
+                                   boolean lowerOnly) {
+        int added = 0;
+        for(int v = 0; v < lists.size(); v++) {
+            int end = start[v + 1];
+            if(start[v] == end) {
+                continue;
+            }
+            Arrays.sort(buf, start[v], end);
+            List<Integer> old = lists.get(v);
+            List<Integer> merged = new ArrayList<Integer>(old.size() + end - start[v]);
+            int i = 0;
+            int j = start[v];
+            int last = -1;
+            while(i < old.size() || j < end) {
+                if(j >= end || (i < old.size() && old.get(i) <= buf[j])) {
+                    // The old list never holds duplicates, so keep its entry.
+                    merged.add(old.get(i));
+                    last = old.get(i++);
+                } else {
+                    int u = buf[j++];
+                    if(u != last) {
+                        merged.add(u);
+                        last = u;
+                        if(!lowerOnly || v <= u) {
+                            added++;
+                        }
+                    }
+                }
+            }
+            lists.set(v, merged);
+        }
+        return added;
+    }
+    
     /** Checks whether an edge exists between two vertices.
      * In an undirected graph, this returns the same as hasEdge(end, begin).
      * @return true if there is an edge from begin to end.
@@ -106,6 +438,9 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
         if(edges == null || end < 0 || end >= adj.size()) {
             throw new IndexOutOfBoundsException();
         }
+        if(removed.get(begin) || removed.get(end)) {
+            return false;
+        }
         return (findEdge(edges, end) >= 0);
     }
     
@@ -115,25 +450,16 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
         if(edges == null) {
             throw new IndexOutOfBoundsException();
         }
-        return edges.size();
+        return edges.size() - staleOut[v];
     }
     
     /** Returns the in-degree of the specified vertex. */
     public int getInDegree(int v) {
-        if(v < 0 || v >= adj.size()) {
+        List<Integer> edges = radj.get(v);
+        if(edges == null) {
             throw new IndexOutOfBoundsException();
         }
-        // To count the in-degree, we have to look for edges to v from *all*
-        // vertices.  (Including v!  Self-loops are allowed.)
-        int d = 0;
-        for(List<Integer> edges : adj) {
-            for(Integer e : edges) {
-                if(e.equals(v)) {
-                    d++;
-                }
-            }
-        }
-        return d;
+        return edges.size() - staleIn[v];
     }
     
     // Wrapper class around List<Integer>, to provide a read-only iterator.
@@ -173,10 +499,73 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
         if(neighbors == null) {
             throw new IndexOutOfBoundsException();
         }
+        if(staleOut[v] > 0) {
+            neighbors = liveEntries(neighbors, neighbors.size() - staleOut[v]);
+        }
         return new NeighborCollection(neighbors);
     }
     
-    /** Returns the number of vertices in the graph. */
+    /** Calls action.accept(u) for each neighbor u of the specified vertex, in
+     * the same order as getNeighbors(v), without boxing any vertex IDs.
+     */
+    public void forEachNeighbor(int v, IntConsumer action) {
+        List<Integer> neighbors = adj.get(v);
+        if(neighbors == null) {
+            throw new IndexOutOfBoundsException();
+        }
+        // Indexed access rather than an iterator, so nothing is allocated.
+        for(int i = 0; i < neighbors.size(); i++) {
+            int u = neighbors.get(i);
+            if(staleOut[v] == 0 || !removed.get(u)) {
+                action.accept(u);
+            }
+        }
+    }
+    
+    /** Copies the neighbors of the specified vertex into dest, starting at
+     * index 0, in the same order as getNeighbors(v).
+     * @return the number of neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getDegree(v).
+     */
+    public int copyNeighbors(int v, int[] dest) {
+        List<Integer> neighbors = adj.get(v);
+        if(neighbors == null) {
+            throw new IndexOutOfBoundsException();
+        }
+        return copyLive(neighbors, staleOut[v], dest);
+    }
+    
+    /** Returns an iterator over the in-neighbors of the specified vertex.
+     * In particular, the vertex u is included in the returned iterator's
+     * sequence if and only if there is an edge from u to v in the graph.
+     */
+    public Iterable<Integer> getInNeighbors(int v) {
+        List<Integer> neighbors = radj.get(v);
+        if(neighbors == null) {
+            throw new IndexOutOfBoundsException();
+        }
+        if(staleIn[v] > 0) {
+            neighbors = liveEntries(neighbors, neighbors.size() - staleIn[v]);
+        }
+        return new NeighborCollection(neighbors);
+    }
+    
+    /** Copies the in-neighbors of the specified vertex into dest, starting at
+     * index 0, in the same order as getInNeighbors(v).
+     * @return the number of in-neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getInDegree(v).
+     */
+    public int copyInNeighbors(int v, int[] dest) {
+        List<Integer> neighbors = radj.get(v);
+        if(neighbors == null) {
+            throw new IndexOutOfBoundsException();
+        }
+        return copyLive(neighbors, staleIn[v], dest);
+    }
+    
+    /** Returns the number of vertex IDs in the graph, removed ones included. */
     public int numVerts() {
         return adj.size();
     }
@@ -185,14 +574,7 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
      * The result does *not* double-count edges in undirected graphs.
      */
     public int numEdges() {
-        int m = 0;
-        for(List<Integer> edges : adj) {
-            m += edges.size();
-        }
-        if(undirected) {
-            return m/2;
-        }
-        return m;
+        return edgeCount;
     }
     
     /** Returns true if the graph is directed. */
@@ -208,5 +590,12 @@ public class MysteryUnweightedGraphImplementation implements UnweightedGraph {
     /** Removes all vertices and edges from the graph. */
     public void clear() {
         adj.clear();
+        radj.clear();
+        removed.clear();
+        Arrays.fill(staleOut, 0);
+        Arrays.fill(staleIn, 0);
+        staleEntries = 0;
+        compactionCursor = 0;
+        edgeCount = 0;
     }
 }
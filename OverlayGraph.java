@@ -0,0 +1,667 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.IntConsumer;
+/**
+ * A mutable implementation of the Unweighted Graph ADT that layers a small
+ * delta over an immutable base graph, such as a CsrUnweightedGraph or a
+ * MappedCsrGraph opened from a snapshot.  Adding a link records it in the
+ * delta instead of rebuilding the base, so an update costs time proportional
+ * to the changes already made to its endpoints, not to the size of the graph.
+ *   For every vertex the delta keeps two sorted arrays: the neighbors added
+ * since the base was built, and the base neighbors since removed.  Reads merge
+ * them with the base on the fly: a vertex's neighbors are its base neighbors,
+ * less the removed ones, followed by the added ones.  A vertex the delta does
+ * not touch is read straight from the base.  New vertices get IDs after the
+ * base's, and all of their edges live in the delta.  A directed graph keeps
+ * the same arrays for in-links; in an undirected graph the two coincide.
+ *   Once the delta holds mergeThreshold entries, a background thread folds a
+ * copy of it into a new CSR base, while updates carry on against the old one.
+ * The next update after the merge finishes installs the new base and keeps
+ * only the changes made since the copy was taken; merge does the same at
+ * once.  The delta's arrays are replaced, never modified, on every update, so
+ * the copy is just the tables that point to them.
+ *   Removing a vertex removes its edges through the delta and leaves a
+ * tombstone, as in MysteryUnweightedGraphImplementation.
+ *   The graph is not safe for use by more than one thread at a time, apart
+ * from its own background merge.  freeze returns a read-only copy, which any
+ * number of threads may read at once while this graph carries on changing.  Any method that takes one or more vertex IDs
+ * as arguments may throw an IndexOutOfBoundsException if any input ID is out
+ * of bounds.
+ */
+public class OverlayGraph implements UnweightedGraph {
+    /** The delta size at which a background merge starts, if none is given. */
+    public static final int DEFAULT_MERGE_THRESHOLD = 1 << 14;
+
+    // The immutable base graph, and the number of vertices it has.
+    private Graph base;
+    private int baseVerts;
+    private final boolean undirected;
+
+    // addedOut[v] and removedOut[v] are the sorted neighbors added to and
+    // removed from v's base neighbors, or null if there are none; addedIn and
+    // removedIn are the same for in-neighbors.  In an undirected graph the in
+    // tables are the out tables.  The arrays are never modified once stored.
+    private int[][] addedOut;
+    private int[][] removedOut;
+    private int[][] addedIn;
+    private int[][] removedIn;
+
+    // The total length of the arrays in the out tables.
+    private int deltaSize;
+
+    private int numVerts;
+    private int numEdges;
+
+    // removed.get(v) is true once v has been removed.
+    private BitSet removed;
+
+    // The delta size at which a merge starts.
+    private final int mergeThreshold;
+
+    // True if this is a read-only copy, whose mutators all throw.
+    private final boolean frozen;
+
+    // The merge in progress, and the copy of the out and in tables it is
+    // folding into the new base, or null if none is in progress.
+    private FutureTask<CsrUnweightedGraph> pendingMerge;
+    private OverlayGraph mergeSource;
+
+    /** Constructs an overlay over the given base graph, which must never
+     * change afterwards, merging in the background once the delta holds
+     * DEFAULT_MERGE_THRESHOLD entries.
+     */
+    public OverlayGraph(Graph base) {
+        this(base, DEFAULT_MERGE_THRESHOLD);
+    }
+
+    /** Constructs an overlay over the given base graph, which must never
+     * change afterwards, merging in the background once the delta holds
+     * mergeThreshold entries.
+     * @throws IllegalArgumentException if mergeThreshold is less than 1.
+     */
+    public OverlayGraph(Graph base, int mergeThreshold) {
+        if(mergeThreshold < 1) {
+            throw new IllegalArgumentException("Merge threshold must be positive: "
+                                               + mergeThreshold);
+        }
+        this.mergeThreshold = mergeThreshold;
+        frozen = false;
+        undirected = !base.isDirected();
+        reset(base);
+        numEdges = base.numEdges();
+        removed = new BitSet();
+    }
+
+    // Constructs a read-only copy of the given overlay's base and delta, to be
+    // read from other threads.  The delta's arrays are shared.
+    private OverlayGraph(OverlayGraph source) {
+        mergeThreshold = Integer.MAX_VALUE;
+        frozen = true;
+        undirected = source.undirected;
+        base = source.base;
+        baseVerts = source.baseVerts;
+        numVerts = source.numVerts;
+        numEdges = source.numEdges;
+        deltaSize = source.deltaSize;
+        addedOut = Arrays.copyOf(source.addedOut, numVerts);
+        removedOut = Arrays.copyOf(source.removedOut, numVerts);
+        addedIn = undirected ? addedOut : Arrays.copyOf(source.addedIn, numVerts);
+        removedIn = undirected ? removedOut : Arrays.copyOf(source.removedIn, numVerts);
+        removed = (BitSet) source.removed.clone();
+    }
+
+    // Makes the given graph the base, with an empty delta.
+    private void reset(Graph newBase) {
+        base = newBase;
+        baseVerts = newBase.numVerts();
+        numVerts = baseVerts;
+        addedOut = new int[Math.max(numVerts, 16)][];
+        removedOut = new int[addedOut.length][];
+        addedIn = undirected ? addedOut : new int[addedOut.length][];
+        removedIn = undirected ? removedOut : new int[addedOut.length][];
+        deltaSize = 0;
+    }
+
+    /** Returns the base graph the delta is layered over.  It changes when a
+     * merge is installed.
+     */
+    public Graph getBase() {
+        return base;
+    }
+
+    /** Returns the number of entries in the delta: the edges added to or
+     * removed from the base, counted once per endpoint in an undirected graph.
+     */
+    public int getDeltaSize() {
+        return deltaSize;
+    }
+
+    /** Returns a read-only copy of the graph as it is now, which later changes
+     * to this graph do not affect.  Any number of threads may read the copy at
+     * once; its mutators all throw UnsupportedOperationException.  The copy
+     * shares the base and the delta's arrays, so it costs time proportional to
+     * the number of vertices, not edges.
+     */
+    public OverlayGraph freeze() {
+        return new OverlayGraph(this);
+    }
+
+    /** Folds the whole delta into a new base now, first waiting for any
+     * merge in progress.  Afterwards getDeltaSize() is 0.
+     * @throws UnsupportedOperationException if the graph is a frozen copy.
+     */
+    public void merge() {
+        checkMutable();
+        if(pendingMerge != null) {
+            installMerge(awaitMerge());
+        }
+        if(deltaSize > 0) {
+            reset(new CsrUnweightedGraph(this));
+        }
+    }
+
+    /** Adds a new vertex, with no edges.
+     * @return the ID of the added vertex.
+     * @throws UnsupportedOperationException if the graph is a frozen copy.
+     */
+    public int addVertex() {
+        checkMutable();
+        if(numVerts == addedOut.length) {
+            addedOut = Arrays.copyOf(addedOut, 2 * numVerts);
+            removedOut = Arrays.copyOf(removedOut, 2 * numVerts);
+            addedIn = undirected ? addedOut : Arrays.copyOf(addedIn, 2 * numVerts);
+            removedIn = undirected ? removedOut : Arrays.copyOf(removedIn, 2 * numVerts);
+        }
+        return numVerts++;
+    }
+
+    /** Adds an unweighted edge between two vertices.
+     * In an undirected graph, this has the same effect as addEdge(end, begin).
+     * @return false if the edge was already in the graph.
+     * @throws IllegalArgumentException if either vertex has been removed.
+     * @throws UnsupportedOperationException if the graph is a frozen copy.
+     */
+    public boolean addEdge(int begin, int end) {
+        checkMutable();
+        checkVertex(begin);
+        checkVertex(end);
+        checkLive(begin);
+        checkLive(end);
+        if(hasEdge(begin, end)) {
+            return false;
+        }
+        if(inBase(begin, end)) {
+            set(removedOut, begin, without(removedOut[begin], end));
+            if(!undirected || begin != end) {
+                set(removedIn, end, without(removedIn[end], begin));
+            }
+        } else {
+            set(addedOut, begin, with(addedOut[begin], end));
+            if(!undirected || begin != end) {
+                set(addedIn, end, with(addedIn[end], begin));
+            }
+        }
+        updated(1);
+        return true;
+    }
+
+    /** Removes the edge between two vertices.
+     * In an undirected graph, this has the same effect as removeEdge(end, begin).
+     * @return false if the edge was not in the graph.
+     * @throws UnsupportedOperationException if the graph is a frozen copy.
+     */
+    public boolean removeEdge(int begin, int end) {
+        checkMutable();
+        checkVertex(begin);
+        checkVertex(end);
+        if(!hasEdge(begin, end)) {
+            return false;
+        }
+        if(inBase(begin, end)) {
+            set(removedOut, begin, with(removedOut[begin], end));
+            if(!undirected || begin != end) {
+                set(removedIn, end, with(removedIn[end], begin));
+            }
+        } else {
+            set(addedOut, begin, without(addedOut[begin], end));
+            if(!undirected || begin != end) {
+                set(addedIn, end, without(addedIn[end], begin));
+            }
+        }
+        updated(-1);
+        return true;
+    }
+
+    /** Removes a vertex and all of its edges, which costs time proportional to
+     * its degree.  The IDs of the other vertices do not change, and numVerts()
+     * still counts the removed one, which has no edges from then on.
+     * @return false if the vertex was already removed.
+     * @throws UnsupportedOperationException if the graph is a frozen copy.
+     */
+    public boolean removeVertex(int v) {
+        checkMutable();
+        checkVertex(v);
+        if(removed.get(v)) {
+            return false;
+        }
+        int[] out = new int[getDegree(v)];
+        copyNeighbors(v, out);
+        for(int u : out) {
+            removeEdge(v, u);
+        }
+        if(!undirected) {
+            int[] in = new int[getInDegree(v)];
+            copyInNeighbors(v, in);
+            for(int u : in) {
+                removeEdge(u, v);
+            }
+        }
+        removed.set(v);
+        return true;
+    }
+
+    /** Returns true if the specified vertex has been removed. */
+    public boolean isRemoved(int v) {
+        checkVertex(v);
+        return removed.get(v);
+    }
+
+    /** Adds a batch of unweighted edges: the i-th edge runs from begins[i] to
+     * ends[i], for i less than count, each recorded in the delta.
+     * @return the number of edges that were not already in the graph.
+     * @throws IndexOutOfBoundsException if any vertex ID is out of bounds, in
+     *     which case no edges are added.
+     * @throws IllegalArgumentException if any vertex has been removed, in which
+     *     case no edges are added.
+     * @throws UnsupportedOperationException if the graph is a frozen copy.
+     */
+    public int addEdges(int[] begins, int[] ends, int count) {
+        checkMutable();
+        for(int i = 0; i < count; i++) {
+            checkVertex(begins[i]);
+            checkVertex(ends[i]);
+            checkLive(begins[i]);
+            checkLive(ends[i]);
+        }
+        int added = 0;
+        for(int i = 0; i < count; i++) {
+            if(addEdge(begins[i], ends[i])) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    // Throws IndexOutOfBoundsException if v is not a vertex.
+    private void checkVertex(int v) {
+        if(v < 0 || v >= numVerts) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    // Throws UnsupportedOperationException if this is a frozen copy.
+    private void checkMutable() {
+        if(frozen) {
+            throw new UnsupportedOperationException("Graph is a frozen copy");
+        }
+    }
+
+    // Throws IllegalArgumentException if v has been removed.
+    private void checkLive(int v) {
+        if(removed.get(v)) {
+            throw new IllegalArgumentException("Vertex " + v + " has been removed");
+        }
+    }
+
+    // Returns true if the base graph has an edge from begin to end.
+    private boolean inBase(int begin, int end) {
+        return begin < baseVerts && end < baseVerts && base.hasEdge(begin, end);
+    }
+
+    // Stores a new delta array for v in one of the tables, keeping count of
+    // the size of the out tables (which in an undirected graph are also the
+    // in tables).
+    private void set(int[][] table, int v, int[] array) {
+        if(table == addedOut || table == removedOut) {
+            deltaSize += length(array) - length(table[v]);
+        }
+        table[v] = array;
+    }
+
+    // Counts an edge added (change 1) or removed (change -1), then installs a
+    // finished merge, or starts one if the delta has grown too large.
+    private void updated(int change) {
+        numEdges += change;
+        if(pendingMerge != null && pendingMerge.isDone()) {
+            installMerge(awaitMerge());
+        }
+        if(pendingMerge == null && deltaSize >= mergeThreshold) {
+            startMerge();
+        }
+    }
+
+    /** Checks whether an edge exists between two vertices.
+     * In an undirected graph, this returns the same as hasEdge(end, begin).
+     * @return true if there is an edge from begin to end.
+     */
+    public boolean hasEdge(int begin, int end) {
+        checkVertex(begin);
+        checkVertex(end);
+        if(contains(addedOut[begin], end)) {
+            return true;
+        }
+        return !contains(removedOut[begin], end) && inBase(begin, end);
+    }
+
+    /** Returns the out-degree of the specified vertex. */
+    public int getDegree(int v) {
+        checkVertex(v);
+        int d = v < baseVerts ? base.getDegree(v) : 0;
+        return d - length(removedOut[v]) + length(addedOut[v]);
+    }
+
+    /** Returns the in-degree of the specified vertex. */
+    public int getInDegree(int v) {
+        checkVertex(v);
+        int d = v < baseVerts ? base.getInDegree(v) : 0;
+        return d - length(removedIn[v]) + length(addedIn[v]);
+    }
+
+    /** Returns an iterable object that allows iteration over the neighbors of
+     * the specified vertex: its remaining base neighbors, in the base's order,
+     * then the ones added since, in increasing order of ID.
+     */
+    public Iterable<Integer> getNeighbors(int v) {
+        checkVertex(v);
+        if(addedOut[v] == null && removedOut[v] == null) {
+            return v < baseVerts ? base.getNeighbors(v) : Collections.<Integer>emptyList();
+        }
+        int[] neighbors = new int[getDegree(v)];
+        copyNeighbors(v, neighbors);
+        return iterable(neighbors);
+    }
+
+    /** Returns an iterable object that allows iteration over the in-neighbors
+     * of the specified vertex, in the same order as copyInNeighbors.
+     */
+    public Iterable<Integer> getInNeighbors(int v) {
+        checkVertex(v);
+        if(addedIn[v] == null && removedIn[v] == null) {
+            return v < baseVerts ? base.getInNeighbors(v) : Collections.<Integer>emptyList();
+        }
+        int[] neighbors = new int[getInDegree(v)];
+        copyInNeighbors(v, neighbors);
+        return iterable(neighbors);
+    }
+
+    // Returns a read-only view of the array.
+    private static Iterable<Integer> iterable(final int[] array) {
+        return new Iterable<Integer>() {
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int i = 0;
+                    public boolean hasNext() {
+                        return i < array.length;
+                    }
+                    public Integer next() {
+                        if(i >= array.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return array[i++];
+                    }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /** Calls action.accept(u) for each neighbor u of the specified vertex, in
+     * the same order as getNeighbors(v).
+     */
+    public void forEachNeighbor(int v, IntConsumer action) {
+        checkVertex(v);
+        if(addedOut[v] == null && removedOut[v] == null) {
+            if(v < baseVerts) {
+                base.forEachNeighbor(v, action);
+            }
+            return;
+        }
+        int[] neighbors = new int[getDegree(v)];
+        copyNeighbors(v, neighbors);
+        for(int u : neighbors) {
+            action.accept(u);
+        }
+    }
+
+    /** Copies the neighbors of the specified vertex into dest, starting at
+     * index 0, in the same order as getNeighbors(v).
+     * @return the number of neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getDegree(v).
+     */
+    public int copyNeighbors(int v, int[] dest) {
+        checkVertex(v);
+        if(addedOut[v] == null && removedOut[v] == null) {
+            return v < baseVerts ? base.copyNeighbors(v, dest) : 0;
+        }
+        int[] fromBase = new int[v < baseVerts ? base.getDegree(v) : 0];
+        if(v < baseVerts) {
+            base.copyNeighbors(v, fromBase);
+        }
+        return mergeInto(fromBase, removedOut[v], addedOut[v], dest);
+    }
+
+    /** Copies the in-neighbors of the specified vertex into dest, starting at
+     * index 0: its remaining base in-neighbors, in the base's order, then the
+     * ones added since, in increasing order of ID.
+     * @return the number of in-neighbors copied.
+     * @throws ArrayIndexOutOfBoundsException if dest is shorter than
+     *     getInDegree(v).
+     */
+    public int copyInNeighbors(int v, int[] dest) {
+        checkVertex(v);
+        if(addedIn[v] == null && removedIn[v] == null) {
+            return v < baseVerts ? base.copyInNeighbors(v, dest) : 0;
+        }
+        int[] fromBase = new int[v < baseVerts ? base.getInDegree(v) : 0];
+        if(v < baseVerts) {
+            base.copyInNeighbors(v, fromBase);
+        }
+        return mergeInto(fromBase, removedIn[v], addedIn[v], dest);
+    }
+
+    // Copies the entries of fromBase that are not in removed, then those of
+    // added, into dest, and returns how many were copied.
+    private static int mergeInto(int[] fromBase, int[] removed, int[] added, int[] dest) {
+        int count = 0;
+        for(int u : fromBase) {
+            if(!contains(removed, u)) {
+                dest[count++] = u;
+            }
+        }
+        if(added != null) {
+            System.arraycopy(added, 0, dest, count, added.length);
+            count += added.length;
+        }
+        return count;
+    }
+
+    /** Returns the number of vertices in the graph. */
+    public int numVerts() {
+        return numVerts;
+    }
+
+    /** Returns the number of edges in the graph.
+     * The result does *not* double-count edges in undirected graphs.
+     */
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /** Returns true if the graph is directed. */
+    public boolean isDirected() {
+        return !undirected;
+    }
+
+    /** Returns true if there are no vertices in the graph. */
+    public boolean isEmpty() {
+        return numVerts == 0;
+    }
+
+    /** Removes all vertices and edges from the graph, leaving an empty base.
+     * A merge in progress is abandoned.
+     * @throws UnsupportedOperationException if the graph is a frozen copy.
+     */
+    public void clear() {
+        checkMutable();
+        pendingMerge = null;
+        mergeSource = null;
+        reset(new CsrUnweightedGraph(!undirected, 0, new int[0], new int[0], 0));
+        numEdges = 0;
+        removed = new BitSet();
+    }
+
+    // Starts folding a copy of the delta into a new base on a background
+    // thread.
+    private void startMerge() {
+        mergeSource = new OverlayGraph(this);
+        final OverlayGraph source = mergeSource;
+        pendingMerge = new FutureTask<CsrUnweightedGraph>(new Callable<CsrUnweightedGraph>() {
+            public CsrUnweightedGraph call() {
+                return new CsrUnweightedGraph(source);
+            }
+        });
+        Thread merger = new Thread(pendingMerge, "overlay-graph-merge");
+        merger.setDaemon(true);
+        merger.start();
+    }
+
+    // Waits for the merge in progress and returns the base it built.
+    private CsrUnweightedGraph awaitMerge() {
+        try {
+            return pendingMerge.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while merging a graph", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Makes the merged graph the base.  A vertex whose delta is still the one
+    // the merge copied is now described by the base alone; any other vertex
+    // changed during the merge, and its delta is worked out again against the
+    // new base.
+    private void installMerge(CsrUnweightedGraph merged) {
+        OverlayGraph source = mergeSource;
+        pendingMerge = null;
+        mergeSource = null;
+        int mergedVerts = merged.numVerts();
+        int[][][] rebased = new int[4][mergedVerts][];
+        for(int v = 0; v < mergedVerts; v++) {
+            if(addedOut[v] != source.addedOut[v] || removedOut[v] != source.removedOut[v]) {
+                int[] current = new int[getDegree(v)];
+                copyNeighbors(v, current);
+                int[] next = new int[merged.getDegree(v)];
+                merged.copyNeighbors(v, next);
+                rebased[0][v] = difference(current, next);
+                rebased[1][v] = difference(next, current);
+            }
+            if(!undirected && (addedIn[v] != source.addedIn[v]
+                               || removedIn[v] != source.removedIn[v])) {
+                int[] current = new int[getInDegree(v)];
+                copyInNeighbors(v, current);
+                int[] next = new int[merged.getInDegree(v)];
+                merged.copyInNeighbors(v, next);
+                rebased[2][v] = difference(current, next);
+                rebased[3][v] = difference(next, current);
+            }
+        }
+        System.arraycopy(rebased[0], 0, addedOut, 0, mergedVerts);
+        System.arraycopy(rebased[1], 0, removedOut, 0, mergedVerts);
+        if(!undirected) {
+            System.arraycopy(rebased[2], 0, addedIn, 0, mergedVerts);
+            System.arraycopy(rebased[3], 0, removedIn, 0, mergedVerts);
+        }
+        base = merged;
+        baseVerts = mergedVerts;
+        deltaSize = countDelta();
+    }
+
+    // Returns the total length of the arrays in the out tables.
+    private int countDelta() {
+        int size = 0;
+        for(int v = 0; v < numVerts; v++) {
+            size += length(addedOut[v]) + length(removedOut[v]);
+        }
+        return size;
+    }
+
+    // Returns the sorted entries of a that are not in b, or null if there are
+    // none.
+    private static int[] difference(int[] a, int[] b) {
+        int[] sortedB = b.clone();
+        Arrays.sort(sortedB);
+        int[] result = new int[a.length];
+        int count = 0;
+        for(int u : a) {
+            if(Arrays.binarySearch(sortedB, u) < 0) {
+                result[count++] = u;
+            }
+        }
+        if(count == 0) {
+            return null;
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    // Returns a new sorted array with u inserted into the sorted array, which
+    // may be null.
+    private static int[] with(int[] array, int u) {
+        if(array == null) {
+            return new int[] {u};
+        }
+        int i = -Arrays.binarySearch(array, u) - 1;
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, i);
+        result[i] = u;
+        System.arraycopy(array, i, result, i + 1, array.length - i);
+        return result;
+    }
+
+    // Returns a new sorted array without u, which the sorted array holds, or
+    // null if nothing would be left.
+    private static int[] without(int[] array, int u) {
+        if(array.length == 1) {
+            return null;
+        }
+        int i = Arrays.binarySearch(array, u);
+        int[] result = new int[array.length - 1];
+        System.arraycopy(array, 0, result, 0, i);
+        System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+        return result;
+    }
+
+    // Returns true if the sorted array, which may be null, holds u.
+    private static boolean contains(int[] array, int u) {
+        return array != null && Arrays.binarySearch(array, u) >= 0;
+    }
+
+    // Returns the length of the array, or 0 if it is null.
+    private static int length(int[] array) {
+        return array == null ? 0 : array.length;
+    }
+}
@@ -0,0 +1,267 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+* OverlayGraphCheck compares an OverlayGraph with a MysteryUnweightedGraphImplementation
+* given the same random changes, on random graphs.
+*
+* Each graph, directed or undirected and with some self-loops, becomes the base of
+* an overlay, as a CsrUnweightedGraph, as a list graph, or as the MappedCsrGraph of
+* a snapshot file, and a list graph with the same edges serves as the reference.
+* Both then get the same vertices added, links added and removed, singly and in
+* batches, and vertices removed. The merge threshold is small, so background
+* merges start every few changes and are installed while changes continue; now
+* and then the delta is merged at once instead. After every change the two
+* graphs must agree on vertex and edge counts, removals, degrees, neighbors and
+* hasEdge, and the overlay's getNeighbors, forEachNeighbor and copyNeighbors must
+* agree on order. A frozen copy taken along the way must still match the graph as
+* it was when frozen.
+*
+* Usage: java OverlayGraphCheck [graphs] [seed]
+* The exit status is 1 if the graphs ever disagree.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class OverlayGraphCheck {
+    // Changes made to each graph.
+    private static final int CHANGES = 200;
+
+    /**
+    * Runs the comparison on the given number of random graphs and prints a summary.
+    */
+    public static void main(String[] args) throws IOException {
+        int graphs = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 25;
+        Random random = new Random(seed);
+        int changes = 0;
+        int installs = 0;
+        int failures = 0;
+        for (int g = 0; g < graphs && failures == 0; g ++) {
+            boolean directed = g % 2 == 0;
+            int n = 1 + random.nextInt(40);
+            MysteryUnweightedGraphImplementation reference =
+                new MysteryUnweightedGraphImplementation(directed, n);
+            int m = random.nextInt(3 * n + 1);
+            int[] begins = new int[m];
+            int[] ends = new int[m];
+            for (int i = 0; i < m; i ++) {
+                begins[i] = random.nextInt(n);
+                ends[i] = random.nextInt(n);
+            }
+            reference.addEdges(begins, ends, m);
+            Graph base;
+            if (g % 3 == 0) {
+                base = new CsrUnweightedGraph(reference);
+            } else if (g % 3 == 1) {
+                MysteryUnweightedGraphImplementation list =
+                    new MysteryUnweightedGraphImplementation(directed, n);
+                list.addEdges(begins, ends, m);
+                base = list;
+            } else {
+                // A file of its own, since a merge over an earlier graph may
+                // still be reading the last one.
+                File snapshot = File.createTempFile("overlay", ".bin");
+                snapshot.deleteOnExit();
+                GraphSnapshot.write(snapshot.getPath(), Collections.nCopies(n, "v"), reference);
+                base = GraphSnapshot.read(snapshot.getPath()).getGraph();
+            }
+            OverlayGraph overlay = new OverlayGraph(base, 1 + random.nextInt(20));
+            String where = (directed ? "directed " : "undirected ") + "graph " + g + " over "
+                           + base.getClass().getSimpleName();
+            String problem = compare(overlay, reference);
+            if (problem != null) {
+                System.out.println(where + ", before any change: " + problem);
+                failures ++;
+            }
+
+            OverlayGraph frozen = null;
+            Graph frozenReference = null;
+            for (int c = 0; c < CHANGES && failures == 0; c ++) {
+                int count = reference.numVerts();
+                int u = random.nextInt(count);
+                int v = random.nextInt(count);
+                int kind = random.nextInt(20);
+                String change;
+                Graph previousBase = overlay.getBase();
+                if (kind == 0) {
+                    change = "add vertex";
+                    if (overlay.addVertex() != reference.addVertex()) {
+                        problem = "addVertex gave different IDs";
+                    }
+                } else if (kind < 9) {
+                    change = "add " + u + " -> " + v;
+                    problem = addEdge(overlay, reference, u, v);
+                } else if (kind < 16) {
+                    change = "remove " + u + " -> " + v;
+                    if (overlay.removeEdge(u, v) != reference.removeEdge(u, v)) {
+                        problem = "removeEdge gave different results";
+                    }
+                } else if (kind == 16) {
+                    change = "remove vertex " + u;
+                    if (overlay.removeVertex(u) != reference.removeVertex(u)) {
+                        problem = "removeVertex gave different results";
+                    }
+                } else if (kind == 17) {
+                    change = "add a batch of links";
+                    problem = addEdges(overlay, reference, random);
+                } else if (kind == 18) {
+                    change = "merge";
+                    overlay.merge();
+                    if (overlay.getDeltaSize() != 0) {
+                        problem = "delta holds " + overlay.getDeltaSize() + " entries after merge";
+                    }
+                } else {
+                    change = "freeze";
+                    frozen = overlay.freeze();
+                    frozenReference = new CsrUnweightedGraph(reference);
+                    // Give a background merge the chance to finish, so that
+                    // the next change installs it.
+                    Thread.yield();
+                }
+                changes ++;
+                if (overlay.getBase() != previousBase && kind != 18) {
+                    installs ++;
+                }
+
+                if (problem == null) {
+                    problem = compare(overlay, reference);
+                }
+                if (problem == null && frozen != null) {
+                    problem = compare(frozen, frozenReference);
+                    if (problem != null) {
+                        problem = "frozen copy: " + problem;
+                    }
+                }
+                if (problem != null) {
+                    System.out.println(where + ", after " + change + ": " + problem);
+                    failures ++;
+                }
+            }
+        }
+        System.out.println(changes + " changes on " + graphs + " graphs, " + installs
+                           + " background merges installed, " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Adds the link to both graphs, which must agree on whether it was new, or
+    // on refusing it if either end was removed; returns a description of any
+    // difference, or null.
+    private static String addEdge(OverlayGraph overlay, MysteryUnweightedGraphImplementation reference,
+                                  int u, int v) {
+        boolean added;
+        try {
+            added = overlay.addEdge(u, v);
+        } catch (IllegalArgumentException e) {
+            if (reference.isRemoved(u) || reference.isRemoved(v)) {
+                return null;
+            }
+            return "addEdge refused a link between live vertices";
+        }
+        if (reference.isRemoved(u) || reference.isRemoved(v)) {
+            return "addEdge accepted a link to a removed vertex";
+        }
+        return added == reference.addEdge(u, v) ? null : "addEdge gave different results";
+    }
+
+    // Adds a few random links between live vertices to both graphs as a batch;
+    // returns a description of any difference, or null.
+    private static String addEdges(OverlayGraph overlay, MysteryUnweightedGraphImplementation reference,
+                                   Random random) {
+        List<Integer> live = new ArrayList<Integer>();
+        for (int v = 0; v < reference.numVerts(); v ++) {
+            if (!reference.isRemoved(v)) {
+                live.add(v);
+            }
+        }
+        if (live.isEmpty()) {
+            return null;
+        }
+        int count = 1 + random.nextInt(8);
+        int[] begins = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i ++) {
+            begins[i] = live.get(random.nextInt(live.size()));
+            ends[i] = live.get(random.nextInt(live.size()));
+        }
+        int added = overlay.addEdges(begins, ends, count);
+        return added == reference.addEdges(begins, ends, count) ? null
+            : "addEdges added a different number of links";
+    }
+
+    // Compares a graph with the reference; returns a description of the first
+    // difference, or null if there is none.
+    private static String compare(OverlayGraph graph, Graph reference) {
+        int n = reference.numVerts();
+        if (graph.numVerts() != n) {
+            return "numVerts is " + graph.numVerts() + ", expected " + n;
+        }
+        if (graph.numEdges() != reference.numEdges()) {
+            return "numEdges is " + graph.numEdges() + ", expected " + reference.numEdges();
+        }
+        int[] buffer = new int[2 * n + 2];
+        int[] expected = new int[2 * n + 2];
+        for (int v = 0; v < n; v ++) {
+            if (reference instanceof MysteryUnweightedGraphImplementation
+                && graph.isRemoved(v) != ((MysteryUnweightedGraphImplementation) reference).isRemoved(v)) {
+                return "isRemoved(" + v + ") is " + graph.isRemoved(v);
+            }
+            if (graph.getDegree(v) != reference.getDegree(v)
+                || graph.getInDegree(v) != reference.getInDegree(v)) {
+                return "degrees of " + v + " are " + graph.getDegree(v) + " and "
+                       + graph.getInDegree(v) + ", expected " + reference.getDegree(v) + " and "
+                       + reference.getInDegree(v);
+            }
+            int d = graph.copyNeighbors(v, buffer);
+            reference.copyNeighbors(v, expected);
+            if (!sameSet(buffer, expected, d)) {
+                return "neighbors of " + v + " are " + Arrays.toString(Arrays.copyOf(buffer, d));
+            }
+            int i = 0;
+            for (int u : graph.getNeighbors(v)) {
+                if (i >= d || u != buffer[i ++]) {
+                    return "getNeighbors(" + v + ") and copyNeighbors disagree";
+                }
+            }
+            final int[] order = Arrays.copyOf(buffer, d);
+            final int[] next = {0};
+            final boolean[] same = {true};
+            graph.forEachNeighbor(v, new IntConsumer() {
+                public void accept(int u) {
+                    same[0] &= next[0] < order.length && order[next[0] ++] == u;
+                }
+            });
+            if (!same[0] || next[0] != d) {
+                return "forEachNeighbor(" + v + ") and copyNeighbors disagree";
+            }
+            d = graph.copyInNeighbors(v, buffer);
+            reference.copyInNeighbors(v, expected);
+            if (!sameSet(buffer, expected, d)) {
+                return "in-neighbors of " + v + " are " + Arrays.toString(Arrays.copyOf(buffer, d));
+            }
+            for (int u = 0; u < n; u ++) {
+                if (graph.hasEdge(v, u) != reference.hasEdge(v, u)) {
+                    return "hasEdge(" + v + ", " + u + ") is " + graph.hasEdge(v, u);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Returns true if the first count entries of a and b hold the same values.
+    private static boolean sameSet(int[] a, int[] b, int count) {
+        int[] x = Arrays.copyOf(a, count);
+        int[] y = Arrays.copyOf(b, count);
+        Arrays.sort(x);
+        Arrays.sort(y);
+        return Arrays.equals(x, y);
+    }
+}
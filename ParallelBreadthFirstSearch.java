@@ -0,0 +1,198 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+/**
+ * A breadth-first search engine that expands each level of the search in
+ * parallel, for whole-graph analytics such as eccentricities, reachability,
+ * and shortest-path trees from hub articles.
+ *   The search is level-synchronous: the frontier is cut into chunks that a
+ * ForkJoinPool's workers expand, stealing from one another as chunks finish
+ * unevenly, and the next level starts only once every chunk of this one is
+ * done.  A vertex is claimed by whichever worker first sets its bit in the
+ * shared visited bitset with a compare-and-set, so each vertex is discovered
+ * exactly once and at its true depth, and the distances are the same as those
+ * of BreadthFirstSearch or DistanceSearch.  Which of several equally short
+ * paths a tree records can differ from run to run.
+ *   The graph must not change during a search, and its read methods must be
+ * safe to call from several threads at once, as they are for every Graph in
+ * this package when nothing modifies it.  An engine runs one search at a
+ * time; its frontier arrays are reused between searches.
+ *
+ * @author Yitong Chen
+ * @author Anton Nagy
+ */
+public class ParallelBreadthFirstSearch {
+    // Frontier vertices per chunk below which a chunk is expanded by one
+    // worker rather than split further.
+    private static final int GRAIN = 256;
+
+    // The graph being searched.
+    private final Graph graph;
+
+    // The pool whose workers expand the frontier.
+    private final ForkJoinPool pool;
+
+    // Bit v is set once some worker has claimed v in this search.
+    private AtomicLongArray visited;
+
+    // The current level, and the next level as workers fill it in; nextSize
+    // is the number of slots of next handed out so far.
+    private int[] frontier;
+    private int[] next;
+    private final AtomicInteger nextSize;
+
+    /**
+    * Constructs a search engine for the given graph that runs on the common
+    * fork/join pool.
+    * @param graph the graph to search
+    */
+    public ParallelBreadthFirstSearch(Graph graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+    * Constructs a search engine for the given graph that runs on the given pool.
+    * @param graph the graph to search
+    * @param pool the pool to run on
+    */
+    public ParallelBreadthFirstSearch(Graph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        frontier = new int[0];
+        next = new int[0];
+        nextSize = new AtomicInteger();
+    }
+
+    /**
+    * Returns the hop distance from source to every vertex, or -1 for vertices
+    * that cannot be reached, in a new array indexed by vertex ID.
+    * @param source ID of the starting vertex
+    * @return distance from source to each vertex
+    */
+    public int[] distances(int source) {
+        return search(source, null);
+    }
+
+    /**
+    * Runs a search over the whole graph from source and returns the resulting
+    * tree, with the same distances as BreadthFirstSearch.shortestPathTree.
+    * @param source ID of the starting vertex
+    * @return the shortest-path tree rooted at source
+    */
+    public ShortestPathTree shortestPathTree(int source) {
+        int[] parent = new int[graph.numVerts()];
+        int[] distance = search(source, parent);
+        return new ShortestPathTree(source, false, distance, parent);
+    }
+
+    // Searches the whole graph from source and returns the distances.  If
+    // parent is not null, the parent of every reached vertex is recorded in it.
+    private int[] search(int source, int[] parent) {
+        int n = graph.numVerts();
+        if (source < 0 || source >= n) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (frontier.length < n) {
+            frontier = new int[n];
+            next = new int[n];
+        }
+        visited = new AtomicLongArray((n + 63) >>> 6);
+        int[] distance = new int[n];
+        Arrays.fill(distance, -1);
+
+        claim(source);
+        distance[source] = 0;
+        if (parent != null) {
+            parent[source] = -1;
+        }
+        frontier[0] = source;
+        int frontierSize = 1;
+        int depth = 0;
+        while (frontierSize > 0) {
+            depth ++;
+            nextSize.set(0);
+            pool.invoke(new LevelTask(0, frontierSize, depth, distance, parent));
+
+            int[] list = frontier;
+            frontier = next;
+            next = list;
+            frontierSize = nextSize.get();
+        }
+        return distance;
+    }
+
+    // Sets v's visited bit, and returns true if this call set it rather than
+    // finding it already set.
+    private boolean claim(int v) {
+        int word = v >>> 6;
+        long bit = 1L << v;
+        long old = visited.get(word);
+        while ((old & bit) == 0) {
+            if (visited.compareAndSet(word, old, old | bit)) {
+                return true;
+            }
+            old = visited.get(word);
+        }
+        return false;
+    }
+
+    // Expands frontier[from] up to frontier[to], splitting the range in half
+    // until it is no more than GRAIN vertices.
+    private final class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final int[] distance;
+        private final int[] parent;
+
+        LevelTask(int from, int to, int depth, int[] distance, int[] parent) {
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.distance = distance;
+            this.parent = parent;
+        }
+
+        protected void compute() {
+            if (to - from > GRAIN) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LevelTask(from, middle, depth, distance, parent),
+                          new LevelTask(middle, to, depth, distance, parent));
+                return;
+            }
+
+            // Collects this chunk's discoveries locally, then reserves room
+            // for them in the next level with a single atomic add.
+            int[] found = new int[GRAIN];
+            int count = 0;
+            int[] neighbors = new int[0];
+            for (int f = from; f < to; f ++) {
+                int u = frontier[f];
+                int degree = graph.getDegree(u);
+                if (neighbors.length < degree) {
+                    neighbors = new int[degree];
+                }
+                graph.copyNeighbors(u, neighbors);
+                for (int i = 0; i < degree; i ++) {
+                    int w = neighbors[i];
+                    if (claim(w)) {
+                        distance[w] = depth;
+                        if (parent != null) {
+                            parent[w] = u;
+                        }
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, 2 * count);
+                        }
+                        found[count ++] = w;
+                    }
+                }
+            }
+            int start = nextSize.getAndAdd(count);
+            System.arraycopy(found, 0, next, start, count);
+        }
+    }
+}
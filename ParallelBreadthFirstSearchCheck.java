@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+* ParallelBreadthFirstSearchCheck compares ParallelBreadthFirstSearch with the
+* sequential searches on random graphs, directed and undirected, in both the list
+* and the CSR representation.
+*
+* For each graph and a few random sources, the parallel distances must equal those
+* of DistanceSearch and of BreadthFirstSearch's tree, and every path in the
+* parallel tree must be as long as its distance and follow edges of the graph.
+* The graphs range from a handful of vertices to frontiers many times the size of
+* a parallel chunk, and the searches run both on the common pool and on a pool of
+* several workers, so that levels really are split, even on a single core.
+*
+* Usage: java ParallelBreadthFirstSearchCheck [graphs] [seed]
+* The exit status is 1 if any search disagrees.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class ParallelBreadthFirstSearchCheck {
+    // Sources searched from in each graph.
+    private static final int SOURCES = 4;
+
+    /**
+    * Runs the comparison on the given number of random graphs and prints a summary.
+    */
+    public static void main(String[] args) {
+        int graphs = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 18;
+        Random random = new Random(seed);
+        ForkJoinPool workers = new ForkJoinPool(4);
+        int searches = 0;
+        int failures = 0;
+        try {
+            for (int g = 0; g < graphs; g ++) {
+                boolean directed = g % 2 == 0;
+                // Mostly small graphs, with every fourth large enough for
+                // frontiers to be split among workers.
+                int n = g % 4 == 3 ? 5000 + random.nextInt(15000) : 1 + random.nextInt(500);
+                int m = random.nextInt(6 * n + 1);
+                MysteryUnweightedGraphImplementation list = randomGraph(random, directed, n, m);
+                Graph[] forms = {list, new CsrUnweightedGraph(list)};
+                for (Graph graph : forms) {
+                    DistanceSearch levels = new DistanceSearch(graph);
+                    BreadthFirstSearch search = new BreadthFirstSearch(graph);
+                    ParallelBreadthFirstSearch[] parallel = {
+                        new ParallelBreadthFirstSearch(graph),
+                        new ParallelBreadthFirstSearch(graph, workers)
+                    };
+                    for (int i = 0; i < SOURCES; i ++) {
+                        int source = random.nextInt(n);
+                        int[] expected = levels.distances(source);
+                        ShortestPathTree tree = search.shortestPathTree(source);
+                        for (int v = 0; v < n; v ++) {
+                            if (tree.getShortestPathLength(v) != expected[v]) {
+                                report(graph, source, "BreadthFirstSearch and DistanceSearch differ at "
+                                       + v);
+                                failures ++;
+                                break;
+                            }
+                        }
+                        for (ParallelBreadthFirstSearch engine : parallel) {
+                            searches ++;
+                            if (!check(graph, source, expected, engine)) {
+                                failures ++;
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            workers.shutdown();
+        }
+        System.out.println(searches + " parallel searches on " + graphs + " graphs, "
+                           + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Compares one engine's distances and tree from source with the expected
+    // distances, reporting the first difference; returns true if there is none.
+    private static boolean check(Graph graph, int source, int[] expected,
+                                 ParallelBreadthFirstSearch engine) {
+        int[] distances = engine.distances(source);
+        if (!Arrays.equals(distances, expected)) {
+            int v = 0;
+            while (distances[v] == expected[v]) {
+                v ++;
+            }
+            report(graph, source, "distance to " + v + " is " + distances[v] + ", expected "
+                   + expected[v]);
+            return false;
+        }
+        ShortestPathTree tree = engine.shortestPathTree(source);
+        for (int v = 0; v < graph.numVerts(); v ++) {
+            if (tree.getShortestPathLength(v) != expected[v]) {
+                report(graph, source, "tree distance to " + v + " is "
+                       + tree.getShortestPathLength(v) + ", expected " + expected[v]);
+                return false;
+            }
+            int[] path = tree.getShortestPath(v);
+            boolean valid = expected[v] < 0 ? path.length == 0
+                : path.length == expected[v] + 1 && path[0] == source && path[expected[v]] == v;
+            for (int i = 0; valid && i + 1 < path.length; i ++) {
+                valid = graph.hasEdge(path[i], path[i + 1]);
+            }
+            if (!valid) {
+                report(graph, source, "tree path to " + v + " is " + Arrays.toString(path));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns a graph with n vertices and m random edges, some of them
+    // duplicates or self-loops.
+    private static MysteryUnweightedGraphImplementation randomGraph(Random random, boolean directed,
+                                                                    int n, int m) {
+        MysteryUnweightedGraphImplementation graph =
+            new MysteryUnweightedGraphImplementation(directed, n);
+        int[] begins = new int[m];
+        int[] ends = new int[m];
+        for (int i = 0; i < m; i ++) {
+            begins[i] = random.nextInt(n);
+            ends[i] = random.nextInt(n);
+        }
+        graph.addEdges(begins, ends, m);
+        return graph;
+    }
+
+    // Prints a failure.
+    private static void report(Graph graph, int source, String message) {
+        System.out.println((graph.isDirected() ? "directed " : "undirected ")
+                           + graph.getClass().getSimpleName() + " with " + graph.numVerts()
+                           + " vertices, source " + source + ": " + message);
+    }
+}
@@ -1,9 +1,4 @@
-import java.util.Scanner;
-import java.util.Map;
-import java.util.HashMap;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.*;
@@ -12,21 +7,70 @@ import java.util.*;
 * PathFinder loads data into a graph and then finds the shortest path between 
 * the two given nodes (with or without an intermediate node).
 *
+* A PathFinder is not safe for use by more than one thread at a time: its search
+* engines, tree cache and random generator all keep state between queries. To
+* serve queries from many threads, call createQueryEngine once loading is done.
+* To keep changing the graph while serving, publish a new engine to a
+* GraphVersions after each batch of changes.
+*
 * @author Yitong Chen
 * @author Anton Nagy
 */
 public class PathFinder {
-    // The graph containing all nodes and edges.
-    private MysteryUnweightedGraphImplementation wikiGraph;
+    /**
+    * The algorithms getShortestPath can use. Every mode finds a path of the same
+    * (shortest) length, though not necessarily the same path.
+    */
+    public enum SearchMode {
+        /** Breadth-first search outward from the starting node. */
+        BREADTH_FIRST,
+        /** Breadth-first searches from both ends that meet in the middle. */
+        BIDIRECTIONAL,
+        /** Breadth-first search that expands each level top-down or bottom-up. */
+        DIRECTION_OPTIMIZING,
+        /** A* search guided by distance bounds from landmark nodes. */
+        LANDMARK_ASTAR
+    }
+    
+    // The graph containing all nodes and edges. If it was opened from a snapshot,
+    // changes are layered over the mapped file by an OverlayGraph.
+    private UnweightedGraph wikiGraph;
+    
+    // The name of every node by ID, and the ID of every name.
+    private LabelDictionary labels;
+    
+    // The breadth-first search engine, whose arrays are reused across queries.
+    private BreadthFirstSearch search;
     
-    // The list holding all the nodes.
-    List<String> nodeList;
+    // The bidirectional search engine, whose arrays are reused across queries.
+    private BidirectionalSearch bidirectionalSearch;
     
-    // Map linking the actual name to the node ID.
-    private Map<String, Integer> labelMap;
+    // The direction-optimizing search engine, whose arrays are reused across queries.
+    private DirectionOptimizingSearch directionOptimizingSearch;
     
-    // Map linking the node ID to the actual name.
-    private Map<Integer, String> nodeMap;
+    // The engine for length-only queries, whose arrays are reused across queries.
+    private DistanceSearch distanceSearch;
+    
+    // Landmark distance bounds and the A* engine they guide, or null until
+    // first needed.
+    private LandmarkOracle landmarkOracle;
+    private LandmarkSearch landmarkSearch;
+    
+    // The algorithm getShortestPath uses.
+    private SearchMode searchMode;
+    
+    // Cache of shortest-path trees by source node, or null if caching is off.
+    private ShortestPathTreeCache treeCache;
+    
+    // Precomputed distances that answer queries ahead of any search, or null.
+    private DistanceOracle distanceOracle;
+    
+    // Scratch array for the neighbors of each node on a path rebuilt from the
+    // distance oracle.
+    private int[] neighborBuffer;
+    
+    // The source of getRandomNode's choices.
+    private Random randomGenerator;
     
     
     /**
@@ -36,45 +80,264 @@ public class PathFinder {
     * @param edgeFile name of the file with the edge names
     */
     public PathFinder(String nodeFile, String edgeFile) {
-        wikiGraph = new MysteryUnweightedGraphImplementation();
-        labelMap = new HashMap<String, Integer>();
-        nodeMap = new HashMap<Integer, String>();
-        nodeList = new ArrayList<String>();
+        initialize(new MysteryUnweightedGraphImplementation());
         
         loadNode(nodeFile);
         loadEdge(edgeFile);
     }
     
+    /**
+    * Constructs a PathFinder from a snapshot file written by saveSnapshot. The graph
+    * is memory-mapped rather than parsed, so this is much faster than loading the
+    * node and edge files. Later changes are kept in an OverlayGraph on top of the
+    * mapped graph, and merged into a new in-memory base in the background once
+    * there are enough of them.
+    * @param snapshotFile name of the snapshot file
+    */
+    public PathFinder(String snapshotFile) {
+        GraphSnapshot snapshot = null;
+        try {
+            snapshot = GraphSnapshot.read(snapshotFile);
+        } catch (IOException e) {
+            System.out.println(e);
+            System.exit(1);
+        }
+        initialize(new OverlayGraph(snapshot.getGraph()));
+        labels = new LabelDictionary(snapshot.getNames());
+        // Removed nodes were written without links, so this only marks them.
+        for (int id : snapshot.getRemovedIds()) {
+            wikiGraph.removeVertex(id);
+            labels.removeId(id);
+        }
+    }
+    
+    // Sets up the label dictionary and search engines for the given graph.
+    private void initialize(UnweightedGraph graph) {
+        wikiGraph = graph;
+        labels = new LabelDictionary();
+        search = new BreadthFirstSearch(wikiGraph);
+        bidirectionalSearch = new BidirectionalSearch(wikiGraph);
+        directionOptimizingSearch = new DirectionOptimizingSearch(wikiGraph);
+        distanceSearch = new DistanceSearch(wikiGraph);
+        searchMode = SearchMode.BREADTH_FIRST;
+        randomGenerator = new Random();
+        neighborBuffer = new int[0];
+    }
+    
+    /**
+    * Returns a thread-safe query engine over a frozen copy of the current graph and
+    * node names, using the current search mode and distance oracle. Later changes
+    * to this PathFinder do not affect the engine. A graph opened from a snapshot is
+    * not copied edge by edge: the engine reads a frozen view of its overlay.
+    * @return the query engine
+    */
+    public ConcurrentPathQueryEngine createQueryEngine() {
+        Graph frozen = wikiGraph;
+        if (frozen instanceof OverlayGraph) {
+            // The base can be shared as it is if nothing has changed since it
+            // was opened or last merged.
+            Graph base = ((OverlayGraph) frozen).getBase();
+            if (((OverlayGraph) frozen).getDeltaSize() == 0 && base.numVerts() == frozen.numVerts()) {
+                frozen = base;
+            }
+        }
+        if (frozen == wikiGraph) {
+            // An overlay shares its base and delta with a read-only copy; any
+            // other live graph is packed into a new CSR graph.
+            frozen = frozen instanceof OverlayGraph ? ((OverlayGraph) frozen).freeze()
+                                                    : new CsrUnweightedGraph(wikiGraph);
+        }
+        // The A* engines share a copy of this finder's landmark bounds rather
+        // than searching from every landmark again.
+        LandmarkOracle landmarks = null;
+        if (searchMode == SearchMode.LANDMARK_ASTAR) {
+            getLandmarkSearch();
+            landmarks = landmarkOracle.freeze();
+        }
+        return new ConcurrentPathQueryEngine(frozen, new LabelDictionary(labels), searchMode,
+                                             distanceOracle, landmarks);
+    }
+    
+    /**
+    * Writes the graph and node names to a snapshot file, which the single-argument
+    * constructor can open again. Removed nodes stay removed when it is opened.
+    * @param snapshotFile name of the file to write
+    * @throws IOException if the file cannot be written
+    */
+    public void saveSnapshot(String snapshotFile) throws IOException {
+        GraphSnapshot.write(snapshotFile, labels.asList(), labels.getRemovedIds(), wikiGraph);
+    }
+    
+    /**
+    * Selects the algorithm used to find shortest paths.
+    * @param mode the search mode
+    */
+    public void setSearchMode(SearchMode mode) {
+        searchMode = mode;
+    }
+    
+    /**
+    * Returns the algorithm used to find shortest paths.
+    * @return the search mode
+    */
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+    
+    /**
+    * Turns on caching of shortest-path trees. Each query from a source that is not
+    * yet cached then runs a full breadth-first search from it and keeps the
+    * resulting tree, so that later queries from the same source need no search at
+    * all, whatever the search mode. Any previously cached trees are discarded.
+    * @param maxBytes the most memory the cached trees may use, in bytes
+    */
+    public void enableTreeCache(long maxBytes) {
+        treeCache = new ShortestPathTreeCache(maxBytes);
+    }
+    
+    /**
+    * Turns off caching of shortest-path trees and discards any cached trees.
+    */
+    public void disableTreeCache() {
+        treeCache = null;
+    }
+    
+    /**
+    * Returns the tree cache, for inspecting its counters, or null if caching is off.
+    * @return the tree cache
+    */
+    public ShortestPathTreeCache getTreeCache() {
+        return treeCache;
+    }
+    
+    /**
+    * Builds landmark distance bounds for the current graph with the given number
+    * of landmarks, replacing any built before. The LANDMARK_ASTAR search mode and
+    * getShortestPathLengthBounds use them; if this is never called, they build
+    * bounds with LandmarkOracle.DEFAULT_LANDMARKS landmarks when first needed.
+    * The bounds are dropped when more nodes or edges are loaded.
+    * @param k the number of landmarks
+    */
+    public void enableLandmarks(int k) {
+        landmarkOracle = new LandmarkOracle(wikiGraph, k);
+        landmarkSearch = new LandmarkSearch(wikiGraph, landmarkOracle);
+    }
+    
+    /**
+    * Returns the landmark distance bounds, or null if none have been built.
+    * @return the landmark oracle
+    */
+    public LandmarkOracle getLandmarkOracle() {
+        return landmarkOracle;
+    }
+    
+    /**
+    * Returns bounds on the length of the shortest path from node1 to node2 from the
+    * landmark distances alone, without any search: a lower bound at position 0, or
+    * -1 if the landmarks prove that no path exists, and at position 1 the length
+    * of the shortest path through a landmark, or -1 if no landmark lies on any
+    * path from node1 to node2.
+    * @param node1 name of the starting article node
+    * @param node2 name of the ending article node
+    * @return lower and upper bounds on the length of shortest path
+    * @throws IllegalArgumentException if either node does not exist
+    */
+    public int[] getShortestPathLengthBounds(String node1, String node2) {
+        int startid = requireNode(node1);
+        int finishid = requireNode(node2);
+        getLandmarkSearch();
+        return new int[] {landmarkOracle.getLowerBound(startid, finishid),
+                          landmarkOracle.getUpperBound(startid, finishid)};
+    }
+    
+    /**
+    * Puts a distance oracle, such as a DistanceMatrix or a HubLabelIndex, in front
+    * of every query. Lengths are then looked up in the oracle, and paths are
+    * rebuilt from it one hop at a time, without any search; this takes precedence
+    * over the tree cache.
+    * The oracle must have been built for the current graph, and is dropped when
+    * more nodes or edges are loaded.
+    * @param oracle the oracle, or null to go back to searching
+    */
+    public void setDistanceOracle(DistanceOracle oracle) {
+        if (oracle != null && oracle.numVerts() != wikiGraph.numVerts()) {
+            throw new IllegalArgumentException("Oracle covers " + oracle.numVerts()
+                                               + " nodes, graph has " + wikiGraph.numVerts());
+        }
+        distanceOracle = oracle;
+    }
+    
+    /**
+    * Returns the distance oracle in front of every query, or null if there is none.
+    * @return the distance oracle
+    */
+    public DistanceOracle getDistanceOracle() {
+        return distanceOracle;
+    }
+    
+    /**
+    * Computes the distance matrix of the current graph, in parallel, and writes it
+    * to a file that DistanceMatrix.read can open and setDistanceOracle can use.
+    * @param matrixFile name of the file to write
+    * @throws IOException if the file cannot be written
+    */
+    public void saveDistanceMatrix(String matrixFile) throws IOException {
+        DistanceMatrix.compute(wikiGraph).write(matrixFile);
+    }
+    
+    /**
+    * Computes the hub labels of the current graph and writes them to a file that
+    * HubLabelIndex.read can open and setDistanceOracle can use. Unlike a distance
+    * matrix, the labels stay small enough for graphs of millions of nodes.
+    * @param labelFile name of the file to write
+    * @throws IOException if the file cannot be written
+    */
+    public void saveHubLabels(String labelFile) throws IOException {
+        HubLabelIndex.compute(wikiGraph).write(labelFile);
+    }
+    
     /**
     * Returns the length of the shortest path from node1 to node2. If no path exists,
     * returns -1. If the two nodes are the same, the path length is 0.
+    * Only the distance is searched for; no path is built.
     * @param node1 name of the starting article node
     * @param node2 name of the ending article node
     * @return length of shortest path
+    * @throws IllegalArgumentException if either node does not exist
     */
     public int getShortestPathLength(String node1, String node2) {
-        List<String> path = getShortestPath(node1, node2);
-        if (path.size() == 0) {
-            return -1;
-        } else {
-            return (path.size() - 1);
+        int startid = requireNode(node1);
+        int finishid = requireNode(node2);
+        if (useTreeCache()) {
+            return getShortestPathTree(startid, false).getShortestPathLength(finishid);
         }
+        return distance(startid, finishid);
     }
     
     /**
     * Returns the length of the shortest path from node1 to node2 through node3. 
     * If no path exists, returns -1. If the two nodes are the same, the path length is 0.
+    * Only the lengths of the two halves are looked up; no path is built.
     * @param node1 name of the starting article node
     * @param node2 name of the ending article node
     * @return length of shortest path
+    * @throws IllegalArgumentException if any of the three nodes does not exist
     */
     public int getShortestPathLength(String node1, String intermediateNode, String node2) {
-        List<String> path = getShortestPath(node1, intermediateNode, node2);
-        if (path.size() == 0) {
-            return -1;
+        int startid = requireNode(node1);
+        int viaid = requireNode(intermediateNode);
+        int finishid = requireNode(node2);
+        
+        int firstHalf;
+        int secondHalf;
+        if (useTreeCache()) {
+            firstHalf = getShortestPathTree(viaid, true).getShortestPathLength(startid);
+            secondHalf = getShortestPathTree(viaid, false).getShortestPathLength(finishid);
         } else {
-            return (path.size() - 1);
+            firstHalf = distance(startid, viaid);
+            secondHalf = distance(viaid, finishid);
         }
+        return joinLengths(firstHalf, secondHalf);
     }
     
     /**
@@ -85,73 +348,245 @@ public class PathFinder {
      * @param node1 name of the starting article node
      * @param node2 name of the ending article node
      * @return list of the names of nodes on the shortest path
+     * @throws IllegalArgumentException if either node does not exist
      */
     public List<String> getShortestPath(String node1, String node2) {
         // Getting and storing the start and finish IDs.
-        int startid = labelMap.get(node1);
-        int finishid = labelMap.get(node2);
+        int startid = requireNode(node1);
+        int finishid = requireNode(node2);
         
-        boolean done = false;
-        
-        // A Queue to hold vertices as they are visited.
-        Queue<Integer> vertexQueue = new LinkedList<Integer>();
-        // A List to keep track of the visited vertices.
-        List<Integer> visitedList = new ArrayList<Integer>();
-        // A List for the shortest path using IDs.
-        List<Integer> pathInt = new ArrayList<Integer>();
-        // The same list with the actual names instead of the IDs.
-        List<String> path = new ArrayList<String>();
-        // A Map linking the nodes with their predecessor. 
-        Map<Integer, Integer> predecessorMap = new HashMap<Integer, Integer>();
-        
-        visitedList.add(startid);
-        vertexQueue.add(startid);
-        
-        // If the start and end nodes are the same, add the node to the shortest path list.
-        // Used breadth-first traversal to traverse the graph, storing the predecessors of
-        // each node as we go through until we find the finish node or we make it through 
-        // the whole graph.
-        if (node1.equals(node2)) {
-            path.add(node1);
+        // Answers from the start node's cached tree if caching is on, and otherwise
+        // from the distance oracle or the search selected by the search mode.
+        int[] pathInt;
+        if (useTreeCache()) {
+            pathInt = getShortestPathTree(startid, false).getShortestPath(finishid);
         } else {
-            if (!node1.equals(node2)) {
-                while (!done && !vertexQueue.isEmpty()) {
-                    Integer frontVertex = vertexQueue.poll();
-                    Iterable<Integer> neighborsIterable = wikiGraph.getNeighbors(frontVertex);
-                    Iterator<Integer> neighbors = neighborsIterable.iterator();
-
-                    while (!done && neighbors.hasNext()) {
-                        Integer nextNeighbor = neighbors.next();
-                        if (!visitedList.contains(nextNeighbor)) {
-                            visitedList.add(nextNeighbor);
-                            predecessorMap.put(nextNeighbor, frontVertex);
-                            vertexQueue.add(nextNeighbor);
-                        }
-                        if (nextNeighbor == finishid) {
-                            done = true;
-                        }
-                    }
+            pathInt = shortestPath(startid, finishid);
+        }
+        
+        return toNames(pathInt);
+    }
+    
+    /**
+    * Returns a shortest path from source to each of the given targets, in the same
+    * form as getShortestPath(source, target). A single breadth-first search from
+    * source serves every target, so this is much faster than asking for each path
+    * separately.
+    * @param source name of the starting article node
+    * @param targets names of the ending article nodes
+    * @return one list of node names per target, in the order of targets
+    * @throws IllegalArgumentException if any of the nodes does not exist
+    */
+    public List<List<String>> getShortestPaths(String source, List<String> targets) {
+        ShortestPathTree tree = getShortestPathTree(requireNode(source), false);
+        List<List<String>> paths = new ArrayList<List<String>>(targets.size());
+        for (String target : targets) {
+            paths.add(toNames(tree.getShortestPath(requireNode(target))));
+        }
+        return paths;
+    }
+    
+    /**
+    * Returns the length of a shortest path from source to each of the given targets,
+    * with the same conventions as getShortestPathLength(source, target). A single
+    * breadth-first search from source serves every target.
+    * @param source name of the starting article node
+    * @param targets names of the ending article nodes
+    * @return one length per target, in the order of targets
+    * @throws IllegalArgumentException if any of the nodes does not exist
+    */
+    public int[] getShortestPathLengths(String source, List<String> targets) {
+        ShortestPathTree tree = getShortestPathTree(requireNode(source), false);
+        int[] lengths = new int[targets.size()];
+        for (int i = 0; i < lengths.length; i ++) {
+            lengths[i] = tree.getShortestPathLength(requireNode(targets.get(i)));
+        }
+        return lengths;
+    }
+    
+    /**
+    * Returns a shortest path from sources.get(i) to targets.get(i) through
+    * intermediateNode for every i, in the same form as
+    * getShortestPath(node1, intermediateNode, node2). The whole batch is answered
+    * from two breadth-first searches from intermediateNode, one backward along
+    * in-links and one forward, however many pairs there are; with the tree cache
+    * on, later batches through the same node need no search at all.
+    * @param sources names of the starting article nodes
+    * @param intermediateNode name of the article node every path must pass through
+    * @param targets names of the ending article nodes, as many as sources
+    * @return one list of node names per pair, in order
+    * @throws IllegalArgumentException if any of the nodes does not exist
+    */
+    public List<List<String>> getShortestPaths(List<String> sources, String intermediateNode,
+                                               List<String> targets) {
+        if (sources.size() != targets.size()) {
+            throw new IllegalArgumentException("Expected as many targets as sources");
+        }
+        int viaid = requireNode(intermediateNode);
+        ShortestPathTree into = getShortestPathTree(viaid, true);
+        ShortestPathTree outOf = getShortestPathTree(viaid, false);
+        List<List<String>> paths = new ArrayList<List<String>>(sources.size());
+        for (int i = 0; i < sources.size(); i ++) {
+            int[] firstHalf = into.getShortestPath(requireNode(sources.get(i)));
+            int[] secondHalf = outOf.getShortestPath(requireNode(targets.get(i)));
+            paths.add(toNames(joinPaths(firstHalf, secondHalf)));
+        }
+        return paths;
+    }
+    
+    /**
+    * Returns the length of a shortest path from sources.get(i) to targets.get(i)
+    * through intermediateNode for every i, with the same conventions as
+    * getShortestPathLength(node1, intermediateNode, node2). As with
+    * getShortestPaths, two breadth-first searches serve the whole batch.
+    * @param sources names of the starting article nodes
+    * @param intermediateNode name of the article node every path must pass through
+    * @param targets names of the ending article nodes, as many as sources
+    * @return one length per pair, in order
+    * @throws IllegalArgumentException if any of the nodes does not exist
+    */
+    public int[] getShortestPathLengths(List<String> sources, String intermediateNode,
+                                        List<String> targets) {
+        if (sources.size() != targets.size()) {
+            throw new IllegalArgumentException("Expected as many targets as sources");
+        }
+        int viaid = requireNode(intermediateNode);
+        ShortestPathTree into = getShortestPathTree(viaid, true);
+        ShortestPathTree outOf = getShortestPathTree(viaid, false);
+        int[] lengths = new int[sources.size()];
+        for (int i = 0; i < lengths.length; i ++) {
+            lengths[i] = joinLengths(into.getShortestPathLength(requireNode(sources.get(i))),
+                                     outOf.getShortestPathLength(requireNode(targets.get(i))));
+        }
+        return lengths;
+    }
+    
+    // Rebuilds the path from the distance oracle if there is one, and otherwise
+    // runs the search selected by the search mode, reusing the engine's arrays
+    // from earlier queries.
+    private int[] shortestPath(int startid, int finishid) {
+        if (distanceOracle != null) {
+            return oraclePath(startid, finishid);
+        } else if (searchMode == SearchMode.BIDIRECTIONAL) {
+            return bidirectionalSearch.shortestPath(startid, finishid);
+        } else if (searchMode == SearchMode.DIRECTION_OPTIMIZING) {
+            return directionOptimizingSearch.shortestPath(startid, finishid);
+        } else if (searchMode == SearchMode.LANDMARK_ASTAR) {
+            return getLandmarkSearch().shortestPath(startid, finishid);
+        }
+        return search.shortestPath(startid, finishid);
+    }
+    
+    // Looks the distance up in the oracle if there is one, and otherwise runs
+    // the length-only search matching the search mode.
+    private int distance(int startid, int finishid) {
+        if (distanceOracle != null) {
+            return distanceOracle.getDistance(startid, finishid);
+        } else if (searchMode == SearchMode.BIDIRECTIONAL) {
+            return distanceSearch.bidirectionalDistance(startid, finishid);
+        } else if (searchMode == SearchMode.DIRECTION_OPTIMIZING) {
+            return directionOptimizingSearch.shortestPathLength(startid, finishid);
+        } else if (searchMode == SearchMode.LANDMARK_ASTAR) {
+            return getLandmarkSearch().shortestPathLength(startid, finishid);
+        }
+        return distanceSearch.distance(startid, finishid);
+    }
+    
+    // Walks from the start node to the finish node, at each step following a
+    // link to a neighbor the oracle puts one hop closer to the finish node.
+    private int[] oraclePath(int startid, int finishid) {
+        int length = distanceOracle.getDistance(startid, finishid);
+        int[] path = new int[length + 1];
+        if (length < 0) {
+            return path;
+        }
+        int v = startid;
+        path[0] = v;
+        for (int i = 1; i <= length; i ++) {
+            if (neighborBuffer.length < wikiGraph.getDegree(v)) {
+                neighborBuffer = new int[wikiGraph.getDegree(v)];
+            }
+            int degree = wikiGraph.copyNeighbors(v, neighborBuffer);
+            int closer = -1;
+            for (int j = 0; j < degree && closer < 0; j ++) {
+                if (distanceOracle.getDistance(neighborBuffer[j], finishid) == length - i) {
+                    closer = neighborBuffer[j];
                 }
             }
+            if (closer < 0) {
+                throw new IllegalStateException("Distance oracle does not match the graph");
+            }
+            v = closer;
+            path[i] = v;
         }
-        // Constructs the shortest path by traversing from predecessor to predecessor until
-        //  we reach the start node.
-        int tempID = finishid;
-        while (predecessorMap.get(tempID) != null) {
-            pathInt.add(0, tempID);
-            tempID = predecessorMap.get(tempID);            
+        return path;
+    }
+    
+    // Returns the ID of the named node, or throws IllegalArgumentException if
+    // there is no such node.
+    private int requireNode(String name) {
+        int id = labels.getId(name);
+        if (id < 0) {
+            throw new IllegalArgumentException("No such node: " + name);
         }
-        if (!pathInt.isEmpty()) {
-            pathInt.add(0, startid);
+        return id;
+    }
+    
+    // Returns the A* engine, building landmark bounds first if there are none.
+    private LandmarkSearch getLandmarkSearch() {
+        if (landmarkSearch == null) {
+            enableLandmarks(LandmarkOracle.DEFAULT_LANDMARKS);
         }
-        
-        // We convert the shortest path from ID format to actual name format.
-        for (int i = 0; i < pathInt.size(); i ++) {
-            String readableName = nodeMap.get(pathInt.get(i));
-            path.add(readableName);
+        return landmarkSearch;
+    }
+    
+    // Returns true if queries should be answered from cached trees: caching is
+    // on and no distance oracle takes precedence.
+    private boolean useTreeCache() {
+        return treeCache != null && distanceOracle == null;
+    }
+    
+    // Returns the shortest-path tree rooted at the given node, reversed or not,
+    // from the cache if caching is on and the tree is there.
+    private ShortestPathTree getShortestPathTree(int rootid, boolean reversed) {
+        ShortestPathTree tree = treeCache == null ? null : treeCache.get(rootid, reversed);
+        if (tree == null) {
+            tree = reversed ? search.reverseShortestPathTree(rootid) : search.shortestPathTree(rootid);
+            if (treeCache != null) {
+                treeCache.put(tree);
+            }
         }
-
-        return path;         
+        return tree;
+    }
+    
+    // Joins a path into the intermediate node with a path out of it, or returns
+    // an empty path if either half is missing.
+    private static int[] joinPaths(int[] firstHalf, int[] secondHalf) {
+        if (firstHalf.length == 0 || secondHalf.length == 0) {
+            return new int[0];
+        }
+        int[] path = new int[firstHalf.length + secondHalf.length - 1];
+        System.arraycopy(firstHalf, 0, path, 0, firstHalf.length);
+        System.arraycopy(secondHalf, 1, path, firstHalf.length, secondHalf.length - 1);
+        return path;
+    }
+    
+    // Adds the lengths of the two halves of a path, or returns -1 if either
+    // half is missing.
+    private static int joinLengths(int firstHalf, int secondHalf) {
+        if (firstHalf < 0 || secondHalf < 0) {
+            return -1;
+        }
+        return firstHalf + secondHalf;
+    }
+    
+    // Converts a path from ID format to actual name format.
+    private List<String> toNames(int[] pathInt) {
+        List<String> path = new ArrayList<String>(pathInt.length);
+        for (int i = 0; i < pathInt.length; i ++) {
+            path.add(labels.getName(pathInt[i]));
+        }
+        return path;
     }
         
     /**
@@ -164,174 +599,335 @@ public class PathFinder {
     * @param node2 name of the ending article node
     * @return list that has node1 at position 0, node2 in the final position, and the names of each node 
     *      on the path (in order) in between. 
+    * @throws IllegalArgumentException if any of the three nodes does not exist
     */             
     public List<String> getShortestPath(String node1, String intermediateNode, String node2) {
-        // Finds the shortest path between node1 and intermediateNode.
-        List<String> firstHalf = getShortestPath(node1, intermediateNode);
-        // Finds the shortest path between intermediateNode and node2.
-        List<String> secondHalf = getShortestPath(intermediateNode, node2);
-        // Combining the firstHalf and secondHalf together.
-        List<String> finalList = null;
-
-        if (!(firstHalf.isEmpty() || secondHalf.isEmpty())) {
-            finalList = firstHalf.subList(0, firstHalf.size() - 1);
-            finalList.addAll(secondHalf);
+        int startid = requireNode(node1);
+        int viaid = requireNode(intermediateNode);
+        int finishid = requireNode(node2);
+        
+        // With caching on, both halves come from the intermediate node's trees,
+        // which every query through that node shares. Otherwise each half is
+        // searched for on its own.
+        int[] firstHalf;
+        int[] secondHalf;
+        if (useTreeCache()) {
+            firstHalf = getShortestPathTree(viaid, true).getShortestPath(startid);
+            secondHalf = getShortestPathTree(viaid, false).getShortestPath(finishid);
         } else {
-            finalList = new ArrayList<String>();
+            firstHalf = shortestPath(startid, viaid);
+            secondHalf = shortestPath(viaid, finishid);
         }
-
-        return finalList;
+        
+        // Joins the halves directly in ID form, sharing the intermediate node.
+        return toNames(joinPaths(firstHalf, secondHalf));
     }
     
     /**
     * Loads the file of nodes and creates vertices for all of the entries.
+    * The file is read by TsvGraphLoader, which parses it in parallel.
     * @param nodeFilePath name of file of nodes.
-    * @throws FileNotFoundException if the file does not exist
-    * @throws UnsupportedEncodingException if a line cannot be decoded
     */
     public void loadNode(String nodeFilePath) {
-        File nodeFile = null;
-        Scanner scanner = null;
+        List<String> names = null;
         try {
-            nodeFile = new File(nodeFilePath);
-            scanner = new Scanner(nodeFile);
-        } catch (FileNotFoundException e) {
+            names = TsvGraphLoader.readArticles(nodeFilePath);
+        } catch (IOException e) {
             System.out.println(e);
             System.exit(1);
         }
         
-        // reads through the file line by line.
-        while (scanner.hasNext()) {
-            String articleName = scanner.nextLine();
-            // skips the comment lines and the empty lines
-            if (articleName.length() > 0 && articleName.charAt(0) != '#') {
-                String readableName = null;
-                try {
-                    readableName = java.net.URLDecoder.decode(articleName, "UTF-8");
-                } catch (UnsupportedEncodingException e) {
-                    System.out.println(e);
-                    System.exit(1);
-                }
-                int id = wikiGraph.addVertex();
-                // stores information into the two instance variable maps.
-                labelMap.put(readableName, id);
-                nodeMap.put(id, readableName);
-                nodeList.add(readableName);
-            }
+        // cached trees, the distance oracle and the landmark bounds know nothing
+        // of the new nodes.
+        if (treeCache != null) {
+            treeCache.clear();
+        }
+        distanceOracle = null;
+        landmarkOracle = null;
+        landmarkSearch = null;
+        
+        // the graph and the dictionary give out IDs in the same order.
+        for (String readableName : names) {
+            wikiGraph.addVertex();
+            labels.add(readableName);
         }
     }
     
     /**
     * Loads the file of edges and creates edges between vertices that correspond 
-    * to path between entries.
+    * to path between entries. The file is read by TsvGraphLoader, which parses
+    * it in parallel; every article it names must already have been loaded.
     * @param edgeFilePath name of the file of edges
-    * @throws FileNotFoundException if the file does not exist
-    * @throws UnsupportedEncodingException if a line cannot be decoded
     */
     public void loadEdge(String edgeFilePath) {
-        File edgeFile = null;
-        Scanner scanner = null;
+        TsvGraphLoader.Edges edges = null;
         try {
-            edgeFile = new File(edgeFilePath);
-            scanner = new Scanner(edgeFile);
-        } catch (FileNotFoundException e) {
+            edges = TsvGraphLoader.readLinks(edgeFilePath, labels);
+        } catch (IOException e) {
             System.out.println(e);
             System.exit(1);
         }
         
-        // reads through the file line by line and creates the edges.
-        while (scanner.hasNext()) {
-            String line = scanner.nextLine();
-            String sourceName = "";
-            String targetName = "";
-            
-            // skips the comment lines and the empty lines
-            if (line.length() > 0 && line.charAt(0) != '#') {
-                String[] lineList = line.split("\\s");
-                sourceName = lineList[0];
-                targetName = lineList[1];
-            
-                String sourceReadable = null;
-                String targetReadable = null;
-                
-                try {
-                    sourceReadable = java.net.URLDecoder.decode(sourceName, "UTF-8");
-                    targetReadable = java.net.URLDecoder.decode(targetName, "UTF-8");
-                } catch (UnsupportedEncodingException e) {
-                    System.out.println(e);
-                    System.exit(1);
-                }
-                int sourceid = labelMap.get(sourceReadable);
-                int targetid = labelMap.get(targetReadable);
-                
-                wikiGraph.addEdge(sourceid, targetid);
-            }
+        // cached trees, the distance oracle and the landmark bounds know nothing
+        // of the new edges.
+        if (treeCache != null) {
+            treeCache.clear();
+        }
+        distanceOracle = null;
+        landmarkOracle = null;
+        landmarkSearch = null;
+        
+        // adds the whole file in one batch, which sorts and merges the links
+        // rather than inserting them one at a time.
+        wikiGraph.addEdges(edges.begins, edges.ends, edges.count);
+    }
+    
+    /**
+    * Adds a link from one article node to another on the live graph. Unlike
+    * loadEdge, this keeps the cached trees, a DistanceMatrix oracle and the
+    * landmark bounds, repairing just the parts the new link changes; any other
+    * distance oracle is dropped.
+    * @param node1 name of the article the link leaves
+    * @param node2 name of the article the link enters
+    * @return false if the link was already there
+    * @throws IllegalArgumentException if either node does not exist
+    */
+    public boolean addLink(String node1, String node2) {
+        int begin = requireNode(node1);
+        int end = requireNode(node2);
+        if (!wikiGraph.addEdge(begin, end)) {
+            return false;
+        }
+        if (treeCache != null) {
+            treeCache.edgeAdded(wikiGraph, begin, end);
+        }
+        if (distanceOracle instanceof DistanceMatrix) {
+            distanceOracle = ((DistanceMatrix) distanceOracle).withEdgeAdded(wikiGraph, begin, end);
+        } else {
+            distanceOracle = null;
+        }
+        if (landmarkOracle != null) {
+            landmarkOracle.edgeAdded(wikiGraph, begin, end);
+        }
+        return true;
+    }
+    
+    /**
+    * Removes the link from one article node to another on the live graph,
+    * repairing the cached trees, a DistanceMatrix oracle and the landmark bounds
+    * as addLink does.
+    * @param node1 name of the article the link leaves
+    * @param node2 name of the article the link enters
+    * @return false if there was no such link
+    * @throws IllegalArgumentException if either node does not exist
+    */
+    public boolean removeLink(String node1, String node2) {
+        int begin = requireNode(node1);
+        int end = requireNode(node2);
+        if (!wikiGraph.removeEdge(begin, end)) {
+            return false;
+        }
+        if (treeCache != null) {
+            treeCache.edgeRemoved(wikiGraph, begin, end);
+        }
+        if (distanceOracle instanceof DistanceMatrix) {
+            distanceOracle = ((DistanceMatrix) distanceOracle).withEdgeRemoved(wikiGraph, begin, end);
+        } else {
+            distanceOracle = null;
+        }
+        if (landmarkOracle != null) {
+            landmarkOracle.edgeRemoved(wikiGraph, begin, end);
         }
+        return true;
+    }
+    
+    /**
+    * Removes an article node and all of its links on the live graph. The IDs of
+    * the other nodes do not change, so the cached trees, a DistanceMatrix oracle
+    * and the landmark bounds are repaired as for removeLink rather than rebuilt;
+    * any other distance oracle is dropped. The node's name can no longer be
+    * queried, and getRandomNode no longer returns it.
+    * @param node name of the article to remove
+    * @throws IllegalArgumentException if the node does not exist
+    */
+    public void removeArticle(String node) {
+        int id = requireNode(node);
+        // The trees need the node's links as they were, to find what hung
+        // from it.
+        int[] outNeighbors = new int[wikiGraph.getDegree(id)];
+        wikiGraph.copyNeighbors(id, outNeighbors);
+        int[] inNeighbors = new int[wikiGraph.getInDegree(id)];
+        wikiGraph.copyInNeighbors(id, inNeighbors);
+        wikiGraph.removeVertex(id);
+        labels.remove(node);
+        
+        if (treeCache != null) {
+            treeCache.vertexRemoved(wikiGraph, id, outNeighbors, inNeighbors);
+        }
+        if (distanceOracle instanceof DistanceMatrix) {
+            distanceOracle = ((DistanceMatrix) distanceOracle).withVertexRemoved(wikiGraph, id);
+        } else {
+            distanceOracle = null;
+        }
+        if (landmarkOracle != null) {
+            landmarkOracle.vertexRemoved(wikiGraph, id, outNeighbors, inNeighbors);
+        }
+    }
+    
+    /**
+    * Reseeds the generator behind getRandomNode, so that the same sequence of
+    * random nodes can be produced again, e.g. for benchmarking.
+    * @param seed the seed
+    */
+    public void setRandomSeed(long seed) {
+        randomGenerator = new Random(seed);
     }
     
     /**
     * Generates random node from the node file
     * @return random node
+    * @throws IllegalStateException if every node has been removed
     */
     public String getRandomNode() {
-        Random randomGenerator = new Random();
-        int randomIndex = randomGenerator.nextInt(nodeList.size());
-        String randomNode = nodeList.get(randomIndex);
+        if (labels.liveSize() == 0) {
+            throw new IllegalStateException("Every node has been removed");
+        }
+        int randomIndex = randomGenerator.nextInt(labels.size());
+        String randomNode = labels.getName(randomIndex);
+        while (labels.getId(randomNode) != randomIndex) {
+            // removed nodes keep their IDs; draws again.
+            randomIndex = randomGenerator.nextInt(labels.size());
+            randomNode = labels.getName(randomIndex);
+        }
 
         return randomNode;
     }
     
     /**
     * Takes 2 command line arguments, one for the file with the article names and one
-    * for the file with the links.
+    * for the file with the links, and an optional third argument
+    * "useIntermediateNode". Alternatively, "snapshot <snapshot file>" in place of the
+    * two files opens a snapshot instead, and "convert <node file> <edge file>
+    * <snapshot file>" writes the snapshot of the two files and exits. Finally,
+    * "serve <node file> <edge file> [port]" or "serve snapshot <snapshot file> [port]"
+    * answers queries over HTTP with a PathServer until the process is killed, and
+    * "matrix <node file> <edge file> <matrix file>" precomputes the distances
+    * between all pairs of nodes into a DistanceMatrix file and exits, and "labels
+    * <node file> <edge file> <label file>" does the same with a HubLabelIndex.
     */
     public static void main(String[] args) {
-        String nodeFilePath = null;
-        String edgeFilePath = null;
-        if (args.length <= 1) {
-            System.out.println("There are not enough command line arguments!");
-            System.exit(1);
-        } else if (args.length <= 3) {
-            nodeFilePath = args[0];
-            edgeFilePath = args[1];
-            PathFinder finder = new PathFinder(nodeFilePath, edgeFilePath);
-            
-            String node1 = finder.getRandomNode();
-            String node2 = finder.getRandomNode();
-            String intermediateNode = "";
-            
-            List<String> shortestPath = new ArrayList<String>();
-            int shortestPathLength = 0;
-            
-            if (args.length == 2) {
-                shortestPath = finder.getShortestPath(node1, node2);
-                shortestPathLength = finder.getShortestPathLength(node1, node2);
-            } else {
-                if (args[2].equals("useIntermediateNode")) {
-                    intermediateNode = finder.getRandomNode();
-                    shortestPath = finder.getShortestPath(node1, intermediateNode, node2);
-                    shortestPathLength = finder.getShortestPathLength(node1, intermediateNode, node2);
-                }
+        if (args.length >= 1 && args[0].equals("convert")) {
+            if (args.length != 4) {
+                System.out.println("Usage: java PathFinder convert <node file> <edge file> <snapshot file>");
+                System.exit(1);
+            }
+            PathFinder finder = new PathFinder(args[1], args[2]);
+            try {
+                finder.saveSnapshot(args[3]);
+            } catch (IOException e) {
+                System.out.println(e);
+                System.exit(1);
             }
-            
-            // displays the result
-            if (args.length == 2) {
-                System.out.println("Path from " + node1 + " to " + node2 + 
-                                   ", length = " + shortestPathLength);
+            System.out.println("Wrote snapshot " + args[3]);
+        } else if (args.length >= 1 && args[0].equals("matrix")) {
+            if (args.length != 4) {
+                System.out.println("Usage: java PathFinder matrix <node file> <edge file> <matrix file>");
+                System.exit(1);
+            }
+            PathFinder finder = new PathFinder(args[1], args[2]);
+            try {
+                finder.saveDistanceMatrix(args[3]);
+            } catch (IOException e) {
+                System.out.println(e);
+                System.exit(1);
+            }
+            System.out.println("Wrote distance matrix " + args[3]);
+        } else if (args.length >= 1 && args[0].equals("labels")) {
+            if (args.length != 4) {
+                System.out.println("Usage: java PathFinder labels <node file> <edge file> <label file>");
+                System.exit(1);
+            }
+            PathFinder finder = new PathFinder(args[1], args[2]);
+            try {
+                finder.saveHubLabels(args[3]);
+            } catch (IOException e) {
+                System.out.println(e);
+                System.exit(1);
+            }
+            System.out.println("Wrote hub labels " + args[3]);
+        } else if (args.length >= 1 && args[0].equals("serve")) {
+            if (args.length < 3 || args.length > 4) {
+                System.out.println("Usage: java PathFinder serve <node file> <edge file> [port]");
+                System.out.println("       java PathFinder serve snapshot <snapshot file> [port]");
+                System.exit(1);
+            }
+            PathFinder finder = null;
+            if (args[1].equals("snapshot")) {
+                finder = new PathFinder(args[2]);
             } else {
-                System.out.println("Path from " + node1 + " to " + node2 + " through " +
-                                   intermediateNode + ", length = " + shortestPathLength);
+                finder = new PathFinder(args[1], args[2]);
+            }
+            finder.setSearchMode(SearchMode.BIDIRECTIONAL);
+            int port = args.length == 4 ? Integer.parseInt(args[3]) : 8080;
+            try {
+                PathServer server = new PathServer(finder.createQueryEngine(), port);
+                server.start();
+                System.out.println("Serving on port " + server.getPort());
+            } catch (IOException e) {
+                System.out.println(e);
+                System.exit(1);
             }
-            if (shortestPathLength > 0) {
-                for (int i = 0 ; i < shortestPath.size() - 1; i ++) {
-                    System.out.print(shortestPath.get(i) + " ---> ");
-                }   
-                System.out.println(shortestPath.get(shortestPath.size() - 1));
-            } else if (shortestPathLength == 0) {
-                System.out.println("The start node and the end node are the same!");
+        } else if (args.length <= 1) {
+            System.out.println("There are not enough command line arguments!");
+            System.exit(1);
+        } else if (args.length <= 3) {
+            PathFinder finder = null;
+            if (args[0].equals("snapshot")) {
+                finder = new PathFinder(args[1]);
             } else {
-                System.out.println("The path doesn't exist.");
+                finder = new PathFinder(args[0], args[1]);
             }
+            boolean useIntermediateNode = args.length == 3 && args[2].equals("useIntermediateNode");
+            printRandomPath(finder, useIntermediateNode);
+        }
+    }
+    
+    // Finds and displays the shortest path between two random nodes, through a
+    // third random node if useIntermediateNode is true.
+    private static void printRandomPath(PathFinder finder, boolean useIntermediateNode) {
+        String node1 = finder.getRandomNode();
+        String node2 = finder.getRandomNode();
+        String intermediateNode = "";
+        
+        List<String> shortestPath = new ArrayList<String>();
+        int shortestPathLength = 0;
+        
+        if (!useIntermediateNode) {
+            shortestPath = finder.getShortestPath(node1, node2);
+            shortestPathLength = finder.getShortestPathLength(node1, node2);
+        } else {
+            intermediateNode = finder.getRandomNode();
+            shortestPath = finder.getShortestPath(node1, intermediateNode, node2);
+            shortestPathLength = finder.getShortestPathLength(node1, intermediateNode, node2);
+        }
+        
+        // displays the result
+        if (!useIntermediateNode) {
+            System.out.println("Path from " + node1 + " to " + node2 + 
+                               ", length = " + shortestPathLength);
+        } else {
+            System.out.println("Path from " + node1 + " to " + node2 + " through " +
+                               intermediateNode + ", length = " + shortestPathLength);
+        }
+        if (shortestPathLength > 0) {
+            for (int i = 0 ; i < shortestPath.size() - 1; i ++) {
+                System.out.print(shortestPath.get(i) + " ---> ");
+            }   
+            System.out.println(shortestPath.get(shortestPath.size() - 1));
+        } else if (shortestPathLength == 0) {
+            System.out.println("The start node and the end node are the same!");
+        } else {
+            System.out.println("The path doesn't exist.");
         }
     }  
 }
\ No newline at end of file
@@ -0,0 +1,416 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+* PathFinderBenchmark measures the costs that dominate a PathFinder: loading the
+* node and edge files, answering shortest-path queries between random pairs of
+* nodes (with and without an intermediate node, in every search mode), and
+* iterating over the neighbors of every vertex, and finding the distances from
+* one node to all others.
+*
+* Each benchmark is run for a number of warm-up operations, so that the JIT
+* compiler settles, and then for a number of measured operations, each timed on
+* its own. The report gives throughput, mean and percentile latencies, and the
+* bytes allocated per operation as counted by the JVM for the benchmark thread.
+* Random nodes are drawn through getRandomNode with a fixed seed, so every run
+* asks the same queries.
+*
+* Finally, the scaling benchmark shares one ConcurrentPathQueryEngine among 1, 2,
+* 4, ... threads, up to twice the number of cores, and reports the total query
+* throughput at each thread count.
+*
+* The JMH benchmarks in src/jmh/java cover loading, queries and neighbor
+* iteration as well, in forked JVMs and with JMH's profilers; see the README.
+*
+* Usage: java PathFinderBenchmark &lt;node file&gt; &lt;edge file&gt; [queries]
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class PathFinderBenchmark {
+    // The seed for choosing random nodes.
+    private static final long SEED = 201;
+
+    // Results are folded into this so the JIT cannot discard the work.
+    private static volatile long sink;
+
+    /**
+    * Runs every benchmark on the given files and prints a report.
+    */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java PathFinderBenchmark <node file> <edge file> [queries]");
+            System.exit(1);
+        }
+        final String nodeFile = args[0];
+        final String edgeFile = args[1];
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        printHeader();
+        measure("load TSV files", 3, 10, new Runnable() {
+            public void run() {
+                sink += new PathFinder(nodeFile, edgeFile).getRandomNode().length();
+            }
+        });
+
+        final PathFinder finder = new PathFinder(nodeFile, edgeFile);
+        final File snapshot = File.createTempFile("pathfinder", ".bin");
+        snapshot.deleteOnExit();
+        finder.saveSnapshot(snapshot.getPath());
+        measure("load snapshot", 3, 10, new Runnable() {
+            public void run() {
+                sink += new PathFinder(snapshot.getPath()).getRandomNode().length();
+            }
+        });
+
+        // The same random triples for every query benchmark.
+        finder.setRandomSeed(SEED);
+        final String[][] triples = new String[queries][];
+        for (int i = 0; i < queries; i ++) {
+            triples[i] = new String[] {finder.getRandomNode(), finder.getRandomNode(),
+                                       finder.getRandomNode()};
+        }
+        for (PathFinder.SearchMode mode : PathFinder.SearchMode.values()) {
+            finder.setSearchMode(mode);
+            measure("path, " + mode, queries, queries, new Runnable() {
+                private int next = 0;
+                public void run() {
+                    String[] triple = triples[next ++ % triples.length];
+                    sink += finder.getShortestPath(triple[0], triple[1]).size();
+                }
+            });
+            measure("path length, " + mode, queries, queries, new Runnable() {
+                private int next = 0;
+                public void run() {
+                    String[] triple = triples[next ++ % triples.length];
+                    sink += finder.getShortestPathLength(triple[0], triple[1]);
+                }
+            });
+            measure("path via node, " + mode, queries, queries, new Runnable() {
+                private int next = 0;
+                public void run() {
+                    String[] triple = triples[next ++ % triples.length];
+                    sink += finder.getShortestPath(triple[0], triple[2], triple[1]).size();
+                }
+            });
+        }
+
+        // Queries answered from a precomputed distance matrix.
+        final File matrix = File.createTempFile("pathfinder", ".dist");
+        matrix.deleteOnExit();
+        measure("compute distance matrix", 0, 1, new Runnable() {
+            public void run() {
+                try {
+                    finder.saveDistanceMatrix(matrix.getPath());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        finder.setDistanceOracle(DistanceMatrix.read(matrix.getPath()));
+        measure("path, distance matrix", queries, queries, new Runnable() {
+            private int next = 0;
+            public void run() {
+                String[] triple = triples[next ++ % triples.length];
+                sink += finder.getShortestPath(triple[0], triple[1]).size();
+            }
+        });
+        measure("path length, distance matrix", queries, queries, new Runnable() {
+            private int next = 0;
+            public void run() {
+                String[] triple = triples[next ++ % triples.length];
+                sink += finder.getShortestPathLength(triple[0], triple[1]);
+            }
+        });
+        finder.setDistanceOracle(null);
+
+        // Lengths answered from hub labels.
+        final File hubLabels = File.createTempFile("pathfinder", ".hub");
+        hubLabels.deleteOnExit();
+        measure("compute hub labels", 0, 1, new Runnable() {
+            public void run() {
+                try {
+                    finder.saveHubLabels(hubLabels.getPath());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        finder.setDistanceOracle(HubLabelIndex.read(hubLabels.getPath()));
+        measure("path length, hub labels", queries, queries, new Runnable() {
+            private int next = 0;
+            public void run() {
+                String[] triple = triples[next ++ % triples.length];
+                sink += finder.getShortestPathLength(triple[0], triple[1]);
+            }
+        });
+        finder.setDistanceOracle(null);
+
+        // Landmark bounds, without any search.
+        measure("build landmarks", 0, 1, new Runnable() {
+            public void run() {
+                finder.enableLandmarks(LandmarkOracle.DEFAULT_LANDMARKS);
+            }
+        });
+        measure("path length bounds, landmarks", queries, queries, new Runnable() {
+            private int next = 0;
+            public void run() {
+                String[] triple = triples[next ++ % triples.length];
+                sink += finder.getShortestPathLengthBounds(triple[0], triple[1])[1];
+            }
+        });
+
+        // Every triple's pair routed through one node, as a single batch.
+        final List<String> sources = new ArrayList<String>();
+        final List<String> targets = new ArrayList<String>();
+        for (String[] triple : triples) {
+            sources.add(triple[0]);
+            targets.add(triple[1]);
+        }
+        measure("path via node, batch of " + queries, 3, 10, new Runnable() {
+            private int next = 0;
+            public void run() {
+                String via = triples[next ++ % triples.length][2];
+                sink += finder.getShortestPaths(sources, via, targets).size();
+            }
+        });
+
+        measureScaling(finder.createQueryEngine(), triples);
+
+        // The same length queries, each pinning the current version first,
+        // and the cost of freezing and publishing a new version.
+        final GraphVersions versions = new GraphVersions(finder.createQueryEngine());
+        measure("path length, pinned version", queries, queries, new Runnable() {
+            private int next = 0;
+            public void run() {
+                String[] triple = triples[next ++ % triples.length];
+                GraphVersions.Version version = versions.acquire();
+                try {
+                    sink += version.getEngine().getShortestPathLength(triple[0], triple[1]);
+                } finally {
+                    version.release();
+                }
+            }
+        });
+        measure("publish new version", 3, 10, new Runnable() {
+            public void run() {
+                sink += versions.publish(finder.createQueryEngine());
+            }
+        });
+
+        // Link churn with cached trees and landmark bounds to keep repaired:
+        // each operation adds a link between two random nodes and removes it.
+        finder.enableTreeCache(1L << 28);
+        for (int i = 0; i < 64; i ++) {
+            finder.getShortestPathLength(triples[i][0], triples[i][1]);
+        }
+        measure("add and remove link, 64 cached trees", 20, 200, new Runnable() {
+            private int next = 0;
+            public void run() {
+                String[] triple = triples[next ++ % triples.length];
+                if (finder.addLink(triple[0], triple[2])) {
+                    finder.removeLink(triple[0], triple[2]);
+                }
+            }
+        });
+
+        // Links added to a graph opened from a snapshot, which go into the
+        // overlay's delta, against rebuilding the whole CSR graph for each.
+        final PathFinder opened = new PathFinder(snapshot.getPath());
+        measure("add link, snapshot overlay", 20, 200, new Runnable() {
+            private int next = 0;
+            public void run() {
+                String[] triple = triples[next ++ % triples.length];
+                if (opened.addLink(triple[1], triple[2])) {
+                    sink ++;
+                }
+            }
+        });
+        final Graph mapped = GraphSnapshot.read(snapshot.getPath()).getGraph();
+        measure("add link, CSR rebuild", 3, 10, new Runnable() {
+            public void run() {
+                sink += new CsrUnweightedGraph(mapped).numEdges();
+            }
+        });
+
+        // Neighbor iteration over the same graph in both representations.
+        MysteryUnweightedGraphImplementation mystery = new MysteryUnweightedGraphImplementation();
+        List<String> names = TsvGraphLoader.readArticles(nodeFile);
+        for (int i = 0; i < names.size(); i ++) {
+            mystery.addVertex();
+        }
+        TsvGraphLoader.Edges edges = TsvGraphLoader.readLinks(edgeFile, new LabelDictionary(names));
+        mystery.addEdges(edges.begins, edges.ends, edges.count);
+        final Graph[] graphs = {mystery, new CsrUnweightedGraph(mystery)};
+        String[] kinds = {"list graph", "CSR graph"};
+        for (int g = 0; g < graphs.length; g ++) {
+            final Graph graph = graphs[g];
+            String kind = kinds[g];
+            measure("neighbors via Iterable, " + kind, 20, 50, new Runnable() {
+                public void run() {
+                    long sum = 0;
+                    for (int v = 0; v < graph.numVerts(); v ++) {
+                        for (int u : graph.getNeighbors(v)) {
+                            sum += u;
+                        }
+                    }
+                    sink += sum;
+                }
+            });
+            final DistanceSearch levels = new DistanceSearch(graph);
+            final DirectionOptimizingSearch directionOptimizing = new DirectionOptimizingSearch(graph);
+            measure("distances, top-down, " + kind, 100, 200, new Runnable() {
+                private int next = 0;
+                public void run() {
+                    sink += levels.distances(next ++ % graph.numVerts())[0];
+                }
+            });
+            measure("distances, direction-optimizing, " + kind, 100, 200, new Runnable() {
+                private int next = 0;
+                public void run() {
+                    sink += directionOptimizing.distances(next ++ % graph.numVerts())[0];
+                }
+            });
+            final ParallelBreadthFirstSearch parallel = new ParallelBreadthFirstSearch(graph);
+            measure("distances, parallel fork/join, " + kind, 100, 200, new Runnable() {
+                private int next = 0;
+                public void run() {
+                    sink += parallel.distances(next ++ % graph.numVerts())[0];
+                }
+            });
+            measure("neighbors via copyNeighbors, " + kind, 20, 50, new Runnable() {
+                private int[] buffer = new int[0];
+                public void run() {
+                    long sum = 0;
+                    for (int v = 0; v < graph.numVerts(); v ++) {
+                        if (buffer.length < graph.getDegree(v)) {
+                            buffer = new int[graph.getDegree(v)];
+                        }
+                        int d = graph.copyNeighbors(v, buffer);
+                        for (int i = 0; i < d; i ++) {
+                            sum += buffer[i];
+                        }
+                    }
+                    sink += sum;
+                }
+            });
+        }
+    }
+
+    // Runs all the queries on a shared engine from increasing numbers of
+    // threads, each thread taking an equal share, and prints the throughput.
+    private static void measureScaling(final ConcurrentPathQueryEngine engine,
+                                       final String[][] triples) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println();
+        System.out.println("scaling, " + engine.getSearchMode() + ", " + cores + " cores");
+        System.out.println(String.format("%8s %12s %10s", "threads", "queries/s", "speedup"));
+        double baseline = 0;
+        for (int threads = 1; threads <= 2 * cores; threads *= 2) {
+            // Warms up, then measures on the same worker threads, so the
+            // timed run finds every thread started and the engine's pools of
+            // search engines filled.
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            try {
+                runQueries(workers, engine, triples, threads);
+                long start = System.nanoTime();
+                int queries = runQueries(workers, engine, triples, threads);
+                double rate = queries * 1e9 / (System.nanoTime() - start);
+                if (threads == 1) {
+                    baseline = rate;
+                }
+                System.out.println(String.format("%8d %12.1f %10.2f", threads, rate,
+                                                 rate / baseline));
+            } finally {
+                workers.shutdown();
+            }
+        }
+        System.out.println();
+    }
+
+    // Splits the queries into the given number of tasks, runs them all on the
+    // workers, and returns how many were run.
+    private static int runQueries(ExecutorService workers, final ConcurrentPathQueryEngine engine,
+                                  final String[][] triples, int threads) {
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        for (int t = 0; t < threads; t ++) {
+            final int first = t;
+            final int step = threads;
+            tasks.add(workers.submit(new Runnable() {
+                public void run() {
+                    long sum = 0;
+                    for (int i = first; i < triples.length; i += step) {
+                        sum += engine.getShortestPathLength(triples[i][0], triples[i][1]);
+                    }
+                    sink += sum;
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return triples.length;
+    }
+
+    private static void printHeader() {
+        System.out.println(String.format("%-44s %12s %10s %10s %10s %10s %10s %12s",
+            "benchmark", "ops/s", "mean us", "p50 us", "p90 us", "p99 us", "max us", "bytes/op"));
+    }
+
+    // Runs op warmup times untimed, then iterations times timed, and prints
+    // one line of results.
+    private static void measure(String name, int warmup, int iterations, Runnable op) {
+        for (int i = 0; i < warmup; i ++) {
+            op.run();
+        }
+        long[] nanos = new long[iterations];
+        long allocatedBefore = allocatedBytes();
+        long total = 0;
+        for (int i = 0; i < iterations; i ++) {
+            long start = System.nanoTime();
+            op.run();
+            nanos[i] = System.nanoTime() - start;
+            total += nanos[i];
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        Arrays.sort(nanos);
+
+        String bytesPerOp = allocatedBefore < 0 ? "n/a" : String.valueOf(allocated / iterations);
+        System.out.println(String.format("%-44s %12.1f %10.1f %10.1f %10.1f %10.1f %10.1f %12s",
+            name, iterations * 1e9 / total, total / 1e3 / iterations,
+            percentile(nanos, 0.50), percentile(nanos, 0.90), percentile(nanos, 0.99),
+            nanos[iterations - 1] / 1e3, bytesPerOp));
+    }
+
+    // Returns the given percentile of sorted nanosecond timings, in microseconds.
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+
+    // Returns the bytes allocated so far by this thread, or -1 if the JVM
+    // cannot tell.
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,278 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+* PathServer serves shortest-path queries over HTTP from a graph that is loaded
+* once, using the JDK's built-in HTTP server.
+*
+* GET /path?from=A&amp;to=B answers with a JSON object holding the shortest path
+* from A to B and its length. Adding via=C asks for a shortest path through C.
+* Repeating to= batches several targets into one request, answered from a
+* single breadth-first search from A, or from C if via is given. Unknown articles get a
+* 404 and missing parameters a 400.
+*
+* GET /stats reports the number of path requests served and a histogram of
+* their latencies.
+*
+* Each request runs on its own virtual thread when the JVM supports them (Java
+* 21 and later), and otherwise on a cached pool of platform threads. Queries go
+* to a ConcurrentPathQueryEngine, so requests never wait for one another. Each
+* request pins the current version of a GraphVersions, so a new graph can be
+* published while the server runs; requests already in progress finish against
+* the version they started with.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class PathServer {
+    // The published versions of the graph, each with its own engine.
+    private final GraphVersions versions;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Latencies of /path requests, from parsing to the last byte written.
+    private final LatencyHistogram latencies;
+
+    /**
+    * Constructs a server that will listen on the given port once started.
+    * @param engine the engine answering queries
+    * @param port the port to listen on, or 0 for any free port
+    * @throws IOException if the port cannot be bound
+    */
+    public PathServer(ConcurrentPathQueryEngine engine, int port) throws IOException {
+        this(new GraphVersions(engine), port);
+    }
+
+    /**
+    * Constructs a server that will listen on the given port once started, and
+    * answer each request from the version of the graph current when it arrives.
+    * @param versions the versions answering queries
+    * @param port the port to listen on, or 0 for any free port
+    * @throws IOException if the port cannot be bound
+    */
+    public PathServer(GraphVersions versions, int port) throws IOException {
+        this.versions = versions;
+        latencies = new LatencyHistogram();
+        executor = newRequestExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/path", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                handlePath(exchange);
+            }
+        });
+        server.createContext("/stats", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, "text/plain", "graph version: "
+                     + versions.getCurrentNumber() + "\npath requests: " + latencies + "\n");
+            }
+        });
+    }
+
+    /**
+    * Starts serving requests in the background.
+    */
+    public void start() {
+        server.start();
+    }
+
+    /**
+    * Stops serving, waiting up to the given number of seconds for requests in
+    * progress to finish.
+    * @param delaySeconds how long to wait for requests in progress
+    */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+    * Returns the port the server listens on.
+    * @return the port
+    */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+    * Returns the versions the server answers from, to which a new graph may be
+    * published at any time.
+    * @return the graph versions
+    */
+    public GraphVersions getVersions() {
+        return versions;
+    }
+
+    /**
+    * Returns the latency histogram of /path requests.
+    * @return the histogram
+    */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    // Answers one /path request.
+    private void handlePath(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        GraphVersions.Version version = versions.acquire();
+        try {
+            ConcurrentPathQueryEngine engine = version.getEngine();
+            Map<String, List<String>> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            List<String> from = params.get("from");
+            List<String> to = params.get("to");
+            List<String> via = params.get("via");
+            if (from == null || from.size() != 1 || to == null
+                || (via != null && via.size() != 1)) {
+                send(exchange, 400, "text/plain",
+                     "Expected /path?from=<article>&to=<article>[&to=...][&via=<article>]\n");
+                return;
+            }
+            List<String> names = new ArrayList<String>(to);
+            names.add(from.get(0));
+            if (via != null) {
+                names.add(via.get(0));
+            }
+            for (String name : names) {
+                if (!engine.hasNode(name)) {
+                    send(exchange, 404, "text/plain", "Unknown article: " + name + "\n");
+                    return;
+                }
+            }
+
+            List<List<String>> paths;
+            if (via != null && to.size() > 1) {
+                paths = engine.getShortestPaths(from.get(0), via.get(0), to);
+            } else if (via != null) {
+                paths = new ArrayList<List<String>>();
+                paths.add(engine.getShortestPath(from.get(0), via.get(0), to.get(0)));
+            } else if (to.size() == 1) {
+                paths = new ArrayList<List<String>>();
+                paths.add(engine.getShortestPath(from.get(0), to.get(0)));
+            } else {
+                paths = engine.getShortestPaths(from.get(0), to);
+            }
+            send(exchange, 200, "application/json",
+                 toJson(from.get(0), via == null ? null : via.get(0), to, paths));
+        } finally {
+            version.release();
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    // Formats the answer to a /path request.
+    private static String toJson(String from, String via, List<String> to,
+                                 List<List<String>> paths) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"from\":").append(quote(from));
+        if (via != null) {
+            json.append(",\"via\":").append(quote(via));
+        }
+        json.append(",\"paths\":[");
+        for (int i = 0; i < paths.size(); i ++) {
+            List<String> path = paths.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"to\":").append(quote(to.get(i)));
+            json.append(",\"length\":").append(path.size() - 1);
+            json.append(",\"path\":[");
+            for (int j = 0; j < path.size(); j ++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                json.append(quote(path.get(j)));
+            }
+            json.append("]}");
+        }
+        json.append("]}\n");
+        return json.toString();
+    }
+
+    // Returns the string as a JSON string literal.
+    private static String quote(String s) {
+        StringBuilder quoted = new StringBuilder(s.length() + 2);
+        quoted.append('"');
+        for (int i = 0; i < s.length(); i ++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    // Splits a raw query string into decoded parameter lists by name.
+    private static Map<String, List<String>> parseQuery(String rawQuery)
+            throws UnsupportedEncodingException {
+        Map<String, List<String>> params = new HashMap<String, List<String>>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String name = URLDecoder.decode(pair.substring(0, eq), "UTF-8");
+            String value = URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            List<String> values = params.get(name);
+            if (values == null) {
+                values = new ArrayList<String>();
+                params.put(name, values);
+            }
+            values.add(value);
+        }
+        return params;
+    }
+
+    // Writes a complete response and closes the exchange.
+    private static void send(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    // Returns an executor that runs each task on a new virtual thread if this
+    // JVM has them, and otherwise on a cached pool of platform threads.  The
+    // virtual-thread factory method is looked up reflectively so that the
+    // server still compiles and runs on JVMs older than Java 21.
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,395 @@
+import java.util.Arrays;
+/**
+ * The result of a full breadth-first search from one root vertex: the hop
+ * distance between the root and every vertex, and each reached vertex's
+ * parent on a shortest path.  Once built, a tree answers shortest-path
+ * queries between its root and any other vertex in time proportional to the
+ * length of the path, with no further searching.
+ *   An ordinary tree follows out-links, so it holds shortest paths from the
+ * root to every vertex.  A reversed tree follows in-links, so it holds
+ * shortest paths from every vertex to the root.
+ *   Trees are built by BreadthFirstSearch.shortestPathTree and
+ * BreadthFirstSearch.reverseShortestPathTree, and describe the graph as it was
+ * at that moment, unless they are told of each link or vertex removed or link
+ * added since through edgeAdded, edgeRemoved and vertexRemoved, which repair
+ * the part of the tree the change affects without searching the rest of the
+ * graph again.
+ *
+ * @author Yitong Chen
+ * @author Anton Nagy
+ */
+public class ShortestPathTree {
+    // An empty list of vertices, for repairs that change nothing.
+    private static final int[] NONE = new int[0];
+
+    // The vertex the search started from.
+    private final int source;
+
+    // Whether the search followed in-links rather than out-links.
+    private final boolean reversed;
+
+    // distance[v] is the number of edges on a shortest path between the root and
+    // v, or -1 if there is no such path.
+    private final int[] distance;
+
+    // parent[v] is the vertex next to v on a shortest path towards the root:
+    // its predecessor on the path from the root in an ordinary tree, and its
+    // successor on the path to the root in a reversed one.  Only meaningful if
+    // v is reachable and is not the root.
+    private final int[] parent;
+
+    /**
+    * Constructs a tree from the arrays filled in by a search. The arrays are not
+    * copied.
+    * @param source ID of the vertex the search started from
+    * @param reversed whether the search followed in-links
+    * @param distance hop distance between the root and each vertex, or -1
+    * @param parent parent of each reached vertex
+    */
+    ShortestPathTree(int source, boolean reversed, int[] distance, int[] parent) {
+        this.source = source;
+        this.reversed = reversed;
+        this.distance = distance;
+        this.parent = parent;
+    }
+
+    /**
+    * Returns the vertex the tree was grown from: the start of every path in an
+    * ordinary tree, and the end of every path in a reversed one.
+    * @return ID of the root vertex
+    */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+    * Returns true if the tree holds paths into its root rather than out of it.
+    * @return whether the tree is reversed
+    */
+    public boolean isReversed() {
+        return reversed;
+    }
+
+    /**
+    * Returns the number of vertices the tree covers, reached or not.
+    * @return number of vertices in the graph when the tree was built
+    */
+    public int numVerts() {
+        return distance.length;
+    }
+
+    /**
+    * Returns an estimate of the memory the tree occupies, counting its two arrays
+    * and object headers.
+    * @return size in bytes
+    */
+    public long sizeInBytes() {
+        return 24 + 2 * (16 + 4L * distance.length);
+    }
+
+    /**
+    * Returns the number of edges on a shortest path between the root and vertex
+    * (from the root in an ordinary tree, to it in a reversed one), 0 if vertex is
+    * the root, or -1 if no path exists.
+    * @param vertex ID of the other end of the path
+    * @return length of shortest path
+    */
+    public int getShortestPathLength(int vertex) {
+        return distance[vertex];
+    }
+
+    /**
+    * Returns the vertex IDs on a shortest path between the root and vertex, in
+    * the order they are travelled: from the root to vertex in an ordinary tree,
+    * and from vertex to the root in a reversed one. If vertex is the root, the
+    * path is just that vertex. If no path exists, returns an empty array.
+    * @param vertex ID of the other end of the path
+    * @return IDs of the vertices on the shortest path
+    */
+    public int[] getShortestPath(int vertex) {
+        int length = distance[vertex];
+        int[] path = new int[length + 1];
+        int v = vertex;
+        if (reversed) {
+            for (int i = 0; i <= length; i ++) {
+                path[i] = v;
+                v = parent[v];
+            }
+        } else {
+            for (int i = length; i >= 0; i --) {
+                path[i] = v;
+                v = parent[v];
+            }
+        }
+        return path;
+    }
+
+    /**
+    * Repairs the tree after an edge from begin to end was added to the graph, in
+    * both directions if the graph is undirected. Only the vertices that the new
+    * edge brings closer to the root are visited.
+    * @param graph the graph the tree was grown in, with the edge already added
+    * @param begin ID of the vertex the edge leaves
+    * @param end ID of the vertex the edge enters
+    * @return IDs of the vertices whose distance changed
+    */
+    int[] edgeAdded(Graph graph, int begin, int end) {
+        // A reversed tree meets the edge from its far end.
+        int a = reversed ? end : begin;
+        int b = reversed ? begin : end;
+        int[] changed = lowerFrom(graph, a, b);
+        if (!graph.isDirected() && a != b) {
+            changed = concat(changed, lowerFrom(graph, b, a));
+        }
+        return changed;
+    }
+
+    /**
+    * Repairs the tree after the edge from begin to end was removed from the graph,
+    * in both directions if the graph is undirected. Only the subtree that hung
+    * from the edge is searched again, and only if no other edge can take its
+    * place.
+    * @param graph the graph the tree was grown in, with the edge already removed
+    * @param begin ID of the vertex the edge left
+    * @param end ID of the vertex the edge entered
+    * @return IDs of the vertices whose distance may have changed
+    */
+    int[] edgeRemoved(Graph graph, int begin, int end) {
+        // A reversed tree meets the edge from its far end.
+        int a = reversed ? end : begin;
+        int b = reversed ? begin : end;
+        int[] changed = regrowBelow(graph, a, b);
+        if (!graph.isDirected() && a != b) {
+            changed = concat(changed, regrowBelow(graph, b, a));
+        }
+        return changed;
+    }
+
+    /**
+    * Repairs the tree after a vertex and all of its edges were removed from the
+    * graph. If the vertex was the root, nothing is reachable any more.
+    * @param graph the graph the tree was grown in, with the vertex removed
+    * @param v ID of the removed vertex
+    * @param outNeighbors the vertices v had links to
+    * @param inNeighbors the vertices that had links to v
+    * @return IDs of the vertices whose distance may have changed
+    */
+    int[] vertexRemoved(Graph graph, int v, int[] outNeighbors, int[] inNeighbors) {
+        if (v == source) {
+            Arrays.fill(distance, -1);
+            int[] all = new int[distance.length];
+            for (int u = 0; u < all.length; u ++) {
+                all[u] = u;
+            }
+            return all;
+        }
+        if (distance[v] < 0) {
+            return NONE;
+        }
+        // v can no longer be reached, and the subtrees below its children in
+        // the tree must be grown again without it.
+        int[] children = reversed ? inNeighbors : outNeighbors;
+        int[] subtree = new int[children.length + 1];
+        int size = 0;
+        for (int w : children) {
+            if (w != v && parent[w] == v && distance[w] == distance[v] + 1) {
+                subtree[size ++] = w;
+            }
+        }
+        distance[v] = -1;
+        int[] changed = regrow(graph, subtree, size);
+        changed = Arrays.copyOf(changed, changed.length + 1);
+        changed[changed.length - 1] = v;
+        return changed;
+    }
+
+    // Lowers the distances that a new tree edge from a to b (in the direction
+    // the tree was grown) shortens, and returns the vertices lowered.
+    private int[] lowerFrom(Graph graph, int a, int b) {
+        if (distance[a] < 0 || (distance[b] >= 0 && distance[b] <= distance[a] + 1)) {
+            return NONE;
+        }
+        distance[b] = distance[a] + 1;
+        parent[b] = a;
+
+        // Every shortened path runs through b, so a breadth-first search from
+        // b lowers them all, in order.
+        int[] queue = new int[16];
+        queue[0] = b;
+        int head = 0;
+        int tail = 1;
+        int[] neighbors = new int[0];
+        while (head < tail) {
+            int u = queue[head ++];
+            int degree = childCount(graph, u);
+            neighbors = copyChildren(graph, u, neighbors);
+            for (int i = 0; i < degree; i ++) {
+                int w = neighbors[i];
+                if (distance[w] < 0 || distance[w] > distance[u] + 1) {
+                    distance[w] = distance[u] + 1;
+                    parent[w] = u;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, 2 * tail);
+                    }
+                    queue[tail ++] = w;
+                }
+            }
+        }
+        return Arrays.copyOf(queue, tail);
+    }
+
+    // Repairs the subtree below b after the tree edge from a to b (in the
+    // direction the tree was grown) was removed, and returns its vertices.
+    private int[] regrowBelow(Graph graph, int a, int b) {
+        if (distance[b] <= 0 || parent[b] != a) {
+            // The edge was not in the tree, so no path in it used the edge.
+            return NONE;
+        }
+        int inDegree = parentCount(graph, b);
+        int[] neighbors = copyParents(graph, b, new int[0]);
+        for (int i = 0; i < inDegree; i ++) {
+            if (distance[neighbors[i]] == distance[b] - 1) {
+                // Another edge reaches b just as soon; the subtree stands.
+                parent[b] = neighbors[i];
+                return NONE;
+            }
+        }
+        return regrow(graph, new int[] {b}, 1);
+    }
+
+    // Grows the subtrees below the first size vertices of subtree again, after
+    // the tree links into them were removed, and returns their vertices.  The
+    // array is used to collect the subtrees.
+    private int[] regrow(Graph graph, int[] subtree, int size) {
+        // Collects the subtrees, whose distances are no longer known.  Each
+        // vertex has one parent, so each is found exactly once.
+        int[] neighbors = new int[0];
+        for (int head = 0; head < size; head ++) {
+            int u = subtree[head];
+            int degree = childCount(graph, u);
+            neighbors = copyChildren(graph, u, neighbors);
+            for (int i = 0; i < degree; i ++) {
+                int w = neighbors[i];
+                if (parent[w] == u && distance[w] == distance[u] + 1) {
+                    if (size == subtree.length) {
+                        subtree = Arrays.copyOf(subtree, 2 * size);
+                    }
+                    subtree[size ++] = w;
+                }
+            }
+        }
+        for (int i = 0; i < size; i ++) {
+            distance[subtree[i]] = -1;
+        }
+
+        // Each subtree vertex with a link from outside the subtree gets the
+        // best distance through such a link as a first estimate; entries are
+        // (distance << 32 | vertex), sorted.
+        long[] seeds = new long[size];
+        int seedCount = 0;
+        for (int i = 0; i < size; i ++) {
+            int u = subtree[i];
+            int best = -1;
+            int inDegree = parentCount(graph, u);
+            neighbors = copyParents(graph, u, neighbors);
+            for (int j = 0; j < inDegree; j ++) {
+                int p = neighbors[j];
+                if (distance[p] >= 0 && (best < 0 || distance[p] + 1 < distance[u])) {
+                    best = distance[p] + 1;
+                    distance[u] = best;
+                    parent[u] = p;
+                }
+            }
+            if (best >= 0) {
+                seeds[seedCount ++] = ((long) best << 32) | u;
+            }
+        }
+        Arrays.sort(seeds, 0, seedCount);
+
+        // Settles the subtree in order of distance, taking the nearer of the
+        // next estimate and the next vertex reached within the subtree.  Only
+        // subtree vertices can be lowered, as nothing else depended on the
+        // edge; entries whose distance has since been lowered are skipped.
+        long[] queue = new long[16];
+        int head = 0;
+        int tail = 0;
+        int next = 0;
+        while (next < seedCount || head < tail) {
+            long entry;
+            if (head == tail || (next < seedCount && seeds[next] <= queue[head])) {
+                entry = seeds[next ++];
+            } else {
+                entry = queue[head ++];
+            }
+            int u = (int) entry;
+            if ((int) (entry >>> 32) != distance[u]) {
+                continue;
+            }
+            int degree = childCount(graph, u);
+            neighbors = copyChildren(graph, u, neighbors);
+            for (int i = 0; i < degree; i ++) {
+                int w = neighbors[i];
+                if (distance[w] < 0 || distance[w] > distance[u] + 1) {
+                    distance[w] = distance[u] + 1;
+                    parent[w] = u;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, 2 * tail);
+                    }
+                    queue[tail ++] = ((long) distance[w] << 32) | w;
+                }
+            }
+        }
+        return Arrays.copyOf(subtree, size);
+    }
+
+    // Returns the number of vertices u leads to, in the direction the tree
+    // was grown.
+    private int childCount(Graph graph, int u) {
+        return reversed ? graph.getInDegree(u) : graph.getDegree(u);
+    }
+
+    // Copies the vertices u leads to into buffer, or into a larger array if
+    // buffer is too small, and returns the array used.
+    private int[] copyChildren(Graph graph, int u, int[] buffer) {
+        int degree = childCount(graph, u);
+        if (buffer.length < degree) {
+            buffer = new int[degree];
+        }
+        if (reversed) {
+            graph.copyInNeighbors(u, buffer);
+        } else {
+            graph.copyNeighbors(u, buffer);
+        }
+        return buffer;
+    }
+
+    // Returns the number of vertices that lead to u, in the direction the tree
+    // was grown.
+    private int parentCount(Graph graph, int u) {
+        return reversed ? graph.getDegree(u) : graph.getInDegree(u);
+    }
+
+    // Copies the vertices that lead to u as copyChildren does.
+    private int[] copyParents(Graph graph, int u, int[] buffer) {
+        int degree = parentCount(graph, u);
+        if (buffer.length < degree) {
+            buffer = new int[degree];
+        }
+        if (reversed) {
+            graph.copyNeighbors(u, buffer);
+        } else {
+            graph.copyInNeighbors(u, buffer);
+        }
+        return buffer;
+    }
+
+    // Returns the vertices of first followed by those of second.
+    private static int[] concat(int[] first, int[] second) {
+        if (first.length == 0) {
+            return second;
+        }
+        int[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+}
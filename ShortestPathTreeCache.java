@@ -0,0 +1,209 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+/**
+ * A bounded cache of shortest-path trees, keyed by root vertex and direction,
+ * so that a vertex's ordinary and reversed trees are cached side by side.  When adding
+ * a tree would take the cache over its memory budget, the least recently used
+ * trees are evicted first.  The cache counts its hits, misses and evictions so
+ * that the budget can be tuned against real traffic.
+ *   A ShortestPathTreeCache is not safe for use by more than one thread at a
+ * time.
+ *
+ * @author Yitong Chen
+ * @author Anton Nagy
+ */
+public class ShortestPathTreeCache {
+    // The cached trees, in order from least to most recently used, keyed as
+    // given by key().
+    private final LinkedHashMap<Integer, ShortestPathTree> trees;
+
+    // The memory budget, and the estimated memory the cached trees use.
+    private final long maxBytes;
+    private long usedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+    * Constructs an empty cache.
+    * @param maxBytes the most memory the cached trees may use, in bytes
+    */
+    public ShortestPathTreeCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        trees = new LinkedHashMap<Integer, ShortestPathTree>(16, 0.75f, true);
+    }
+
+    /**
+    * Returns the cached tree for source, or null if there is none. Either way the
+    * lookup is counted as a hit or a miss.
+    * @param source ID of the source vertex
+    * @return the cached tree, or null
+    */
+    public ShortestPathTree get(int source) {
+        return get(source, false);
+    }
+
+    /**
+    * Returns the cached tree rooted at root, ordinary or reversed as asked, or null
+    * if there is none. Either way the lookup is counted as a hit or a miss.
+    * @param root ID of the root vertex
+    * @param reversed whether to look up the reversed tree
+    * @return the cached tree, or null
+    */
+    public ShortestPathTree get(int root, boolean reversed) {
+        ShortestPathTree tree = trees.get(key(root, reversed));
+        if (tree == null) {
+            misses ++;
+        } else {
+            hits ++;
+        }
+        return tree;
+    }
+
+    /**
+    * Adds a tree to the cache, replacing any tree with the same root and direction and
+    * evicting least recently used trees until the cache fits its budget. A tree
+    * larger than the whole budget is not cached.
+    * @param tree the tree to add
+    */
+    public void put(ShortestPathTree tree) {
+        long size = tree.sizeInBytes();
+        if (size > maxBytes) {
+            return;
+        }
+        ShortestPathTree old = trees.put(key(tree.getSource(), tree.isReversed()), tree);
+        if (old != null) {
+            usedBytes -= old.sizeInBytes();
+        }
+        usedBytes += size;
+
+        Iterator<Map.Entry<Integer, ShortestPathTree>> eldest = trees.entrySet().iterator();
+        while (usedBytes > maxBytes) {
+            ShortestPathTree evicted = eldest.next().getValue();
+            eldest.remove();
+            usedBytes -= evicted.sizeInBytes();
+            evictions ++;
+        }
+    }
+
+    /**
+    * Repairs every cached tree after an edge from begin to end was added to the
+    * graph, rather than dropping them.
+    * @param graph the graph the trees were grown in, with the edge added
+    * @param begin ID of the vertex the edge leaves
+    * @param end ID of the vertex the edge enters
+    */
+    public void edgeAdded(Graph graph, int begin, int end) {
+        for (ShortestPathTree tree : trees.values()) {
+            tree.edgeAdded(graph, begin, end);
+        }
+    }
+
+    /**
+    * Repairs every cached tree after the edge from begin to end was removed from
+    * the graph, rather than dropping them.
+    * @param graph the graph the trees were grown in, with the edge removed
+    * @param begin ID of the vertex the edge left
+    * @param end ID of the vertex the edge entered
+    */
+    public void edgeRemoved(Graph graph, int begin, int end) {
+        for (ShortestPathTree tree : trees.values()) {
+            tree.edgeRemoved(graph, begin, end);
+        }
+    }
+
+    /**
+    * Repairs every cached tree after a vertex was removed from the graph, and
+    * drops the trees rooted at it.
+    * @param graph the graph the trees were grown in, with the vertex removed
+    * @param v ID of the removed vertex
+    * @param outNeighbors the vertices v had links to
+    * @param inNeighbors the vertices that had links to v
+    */
+    public void vertexRemoved(Graph graph, int v, int[] outNeighbors, int[] inNeighbors) {
+        for (boolean reversed : new boolean[] {false, true}) {
+            ShortestPathTree tree = trees.remove(key(v, reversed));
+            if (tree != null) {
+                usedBytes -= tree.sizeInBytes();
+            }
+        }
+        for (ShortestPathTree tree : trees.values()) {
+            tree.vertexRemoved(graph, v, outNeighbors, inNeighbors);
+        }
+    }
+
+    /**
+    * Removes every tree from the cache. The counters are left alone.
+    */
+    public void clear() {
+        trees.clear();
+        usedBytes = 0;
+    }
+
+    /**
+    * Returns the number of trees in the cache.
+    * @return number of cached trees
+    */
+    public int size() {
+        return trees.size();
+    }
+
+    /**
+    * Returns the estimated memory used by the cached trees.
+    * @return memory in bytes
+    */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+    * Returns the memory budget given at construction.
+    * @return memory in bytes
+    */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+    * Returns the number of lookups that found a cached tree.
+    * @return hit count
+    */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+    * Returns the number of lookups that found no cached tree.
+    * @return miss count
+    */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+    * Returns the number of trees evicted to stay within the budget.
+    * @return eviction count
+    */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+    * Returns a one-line summary of the cache's counters.
+    */
+    public String toString() {
+        return "trees = " + trees.size() + ", bytes = " + usedBytes + "/" + maxBytes
+            + ", hits = " + hits + ", misses = " + misses + ", evictions = " + evictions;
+    }
+
+    // Ordinary trees are keyed by their root, and reversed trees by the
+    // root's bitwise complement, which is always negative.
+    private static int key(int root, boolean reversed) {
+        return reversed ? ~root : root;
+    }
+}
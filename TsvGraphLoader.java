@@ -0,0 +1,372 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+* TsvGraphLoader reads the article and link files of the Wikispeedia data set
+* (articles.tsv and links.tsv, or files in the same format) much faster than a
+* line-by-line Scanner.
+*
+* Each file is split into chunks that start on line boundaries, and the chunks
+* are memory-mapped and parsed in parallel, one task per chunk, with a
+* hand-written scanner over the raw bytes. Lines that are empty or start with
+* '#' are skipped, as are trailing carriage returns. Article names are
+* URL-decoded as in the original loader; in the link file, each task remembers
+* the ID of every raw name it has already decoded, so a name is decoded at most
+* once per chunk rather than once per link.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+public class TsvGraphLoader {
+    // Files smaller than this are parsed in a single chunk.
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+
+    // No chunk may be larger than this, since one mapping is limited to 2GB.
+    private static final long MAX_CHUNK_BYTES = 1 << 30;
+
+    /**
+    * The links read from a link file, as two parallel arrays of article IDs: the
+    * i-th link runs from begins[i] to ends[i], for i less than count.
+    */
+    public static final class Edges {
+        public final int[] begins;
+        public final int[] ends;
+        public final int count;
+
+        Edges(int[] begins, int[] ends, int count) {
+            this.begins = begins;
+            this.ends = ends;
+            this.count = count;
+        }
+    }
+
+    private TsvGraphLoader() {
+    }
+
+    /**
+    * Reads a file of article names, one per line, and returns the decoded names
+    * in the order they appear in the file.
+    * @param path name of the file of articles
+    * @return the decoded article names
+    * @throws IOException if the file cannot be read or a name cannot be decoded
+    */
+    public static List<String> readArticles(String path) throws IOException {
+        List<List<String>> parts = parseChunks(path, new ChunkParser<List<String>>() {
+            public List<String> parse(ByteBuffer chunk) throws IOException {
+                List<String> names = new ArrayList<String>();
+                int pos = 0;
+                while (pos < chunk.limit()) {
+                    int lineEnd = lineEnd(chunk, pos);
+                    int contentEnd = contentEnd(chunk, pos, lineEnd);
+                    if (contentEnd > pos && chunk.get(pos) != '#') {
+                        names.add(decode(chunk, pos, contentEnd));
+                    }
+                    pos = lineEnd + 1;
+                }
+                return names;
+            }
+        });
+        List<String> names = new ArrayList<String>();
+        for (List<String> part : parts) {
+            names.addAll(part);
+        }
+        return names;
+    }
+
+    /**
+    * Reads a file of links, one per line as a source name and a target name
+    * separated by whitespace, and returns the links as article IDs.
+    * @param path name of the file of links
+    * @param labels dictionary from decoded article name to article ID
+    * @return the links, in the order they appear in the file
+    * @throws IOException if the file cannot be read, a line is malformed, or a
+    *     link names an unknown article
+    */
+    public static Edges readLinks(String path, final LabelDictionary labels)
+            throws IOException {
+        List<Edges> parts = parseChunks(path, new ChunkParser<Edges>() {
+            public Edges parse(ByteBuffer chunk) throws IOException {
+                TokenCache ids = new TokenCache(labels);
+                int[] begins = new int[1024];
+                int[] ends = new int[1024];
+                int count = 0;
+                int pos = 0;
+                while (pos < chunk.limit()) {
+                    int lineEnd = lineEnd(chunk, pos);
+                    int contentEnd = contentEnd(chunk, pos, lineEnd);
+                    if (contentEnd > pos && chunk.get(pos) != '#') {
+                        int sourceEnd = tokenEnd(chunk, pos, contentEnd);
+                        if (sourceEnd >= contentEnd) {
+                            throw new IOException("Malformed link: "
+                                + decode(chunk, pos, contentEnd));
+                        }
+                        int targetEnd = tokenEnd(chunk, sourceEnd + 1, contentEnd);
+                        if (count == begins.length) {
+                            begins = Arrays.copyOf(begins, 2 * count);
+                            ends = Arrays.copyOf(ends, 2 * count);
+                        }
+                        begins[count] = ids.lookup(chunk, pos, sourceEnd);
+                        ends[count] = ids.lookup(chunk, sourceEnd + 1, targetEnd);
+                        count ++;
+                    }
+                    pos = lineEnd + 1;
+                }
+                return new Edges(begins, ends, count);
+            }
+        });
+        int total = 0;
+        for (Edges part : parts) {
+            total += part.count;
+        }
+        int[] begins = new int[total];
+        int[] ends = new int[total];
+        int i = 0;
+        for (Edges part : parts) {
+            System.arraycopy(part.begins, 0, begins, i, part.count);
+            System.arraycopy(part.ends, 0, ends, i, part.count);
+            i += part.count;
+        }
+        return new Edges(begins, ends, total);
+    }
+
+    // Parses one chunk of a file, given as a buffer holding whole lines.
+    private interface ChunkParser<T> {
+        T parse(ByteBuffer chunk) throws IOException;
+    }
+
+    // Splits the file into chunks on line boundaries, parses them in parallel,
+    // and returns the results in file order.
+    private static <T> List<T> parseChunks(String path, final ChunkParser<T> parser)
+            throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int threads = Runtime.getRuntime().availableProcessors();
+            int chunks = (int) Math.max(1, Math.min(size / MIN_CHUNK_BYTES, 4L * threads));
+            chunks = (int) Math.max(chunks, size / MAX_CHUNK_BYTES + 1);
+            final long[] bounds = chunkBounds(channel, chunks);
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, chunks));
+            try {
+                List<Future<T>> futures = new ArrayList<Future<T>>();
+                for (int i = 0; i < chunks; i ++) {
+                    final long start = bounds[i];
+                    final long length = bounds[i + 1] - bounds[i];
+                    futures.add(pool.submit(new Callable<T>() {
+                        public T call() throws IOException {
+                            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                                                                 start, length);
+                            return parser.parse(chunk);
+                        }
+                    }));
+                }
+                List<T> results = new ArrayList<T>(chunks);
+                for (Future<T> future : futures) {
+                    results.add(future.get());
+                }
+                return results;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + path, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    // Returns chunks + 1 offsets into the file, each the start of a line (or
+    // the end of the file), with the i-th chunk running from bounds[i] up to
+    // bounds[i + 1].
+    private static long[] chunkBounds(FileChannel channel, int chunks) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[chunks + 1];
+        bounds[chunks] = size;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < chunks; i ++) {
+            long guess = Math.max(size * i / chunks, bounds[i - 1]);
+            bounds[i] = nextLineStart(channel, guess, probe);
+        }
+        return bounds;
+    }
+
+    // Returns the first offset at or after pos at which a line starts.
+    private static long nextLineStart(FileChannel channel, long pos, ByteBuffer probe)
+            throws IOException {
+        if (pos == 0) {
+            return 0;
+        }
+        // A line starts at pos if the byte before it is a newline.
+        long scan = pos - 1;
+        while (true) {
+            probe.clear();
+            int n = channel.read(probe, scan);
+            if (n <= 0) {
+                return channel.size();
+            }
+            for (int j = 0; j < n; j ++) {
+                if (probe.get(j) == '\n') {
+                    return scan + j + 1;
+                }
+            }
+            scan += n;
+        }
+    }
+
+    // Returns the index of the newline ending the line that starts at pos, or
+    // the chunk's limit if the last line has no newline.
+    private static int lineEnd(ByteBuffer chunk, int pos) {
+        int limit = chunk.limit();
+        while (pos < limit && chunk.get(pos) != '\n') {
+            pos ++;
+        }
+        return pos;
+    }
+
+    // Returns the end of the line's content, leaving out a carriage return.
+    private static int contentEnd(ByteBuffer chunk, int lineStart, int lineEnd) {
+        if (lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r') {
+            return lineEnd - 1;
+        }
+        return lineEnd;
+    }
+
+    // Returns the index of the first whitespace byte at or after pos, or end.
+    private static int tokenEnd(ByteBuffer chunk, int pos, int end) {
+        while (pos < end) {
+            byte b = chunk.get(pos);
+            if (b == ' ' || b == '\t' || b == 0x0B || b == '\f' || b == '\r') {
+                return pos;
+            }
+            pos ++;
+        }
+        return end;
+    }
+
+    // URL-decodes the bytes from begin up to end.
+    private static String decode(ByteBuffer chunk, int begin, int end) throws IOException {
+        byte[] raw = new byte[end - begin];
+        for (int i = 0; i < raw.length; i ++) {
+            raw[i] = chunk.get(begin + i);
+        }
+        return URLDecoder.decode(new String(raw, StandardCharsets.UTF_8), "UTF-8");
+    }
+
+    // An open-addressing hash table from the raw, still-encoded bytes of an
+    // article name to its ID.  Names missing from the table are decoded and
+    // looked up in the label map, then added.
+    private static final class TokenCache {
+        private final LabelDictionary labels;
+        // slots[i] is one more than the index of the entry in slot i, or 0.
+        private int[] slots;
+        private byte[][] keys;
+        private int[] hashes;
+        private int[] ids;
+        private int size;
+
+        TokenCache(LabelDictionary labels) {
+            this.labels = labels;
+            slots = new int[1024];
+            keys = new byte[512][];
+            hashes = new int[512];
+            ids = new int[512];
+        }
+
+        int lookup(ByteBuffer chunk, int begin, int end) throws IOException {
+            int hash = 0;
+            for (int i = begin; i < end; i ++) {
+                hash = 31 * hash + chunk.get(i);
+            }
+            int mask = slots.length - 1;
+            int slot = mix(hash) & mask;
+            while (slots[slot] != 0) {
+                int entry = slots[slot] - 1;
+                if (hashes[entry] == hash && matches(keys[entry], chunk, begin, end)) {
+                    return ids[entry];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            String name = decode(chunk, begin, end);
+            int id = labels.getId(name);
+            if (id < 0) {
+                throw new IOException("Link to unknown article: " + name);
+            }
+            byte[] key = new byte[end - begin];
+            for (int i = 0; i < key.length; i ++) {
+                key[i] = chunk.get(begin + i);
+            }
+            add(key, hash, id);
+            return id;
+        }
+
+        private void add(byte[] key, int hash, int id) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                hashes = Arrays.copyOf(hashes, 2 * size);
+                ids = Arrays.copyOf(ids, 2 * size);
+            }
+            keys[size] = key;
+            hashes[size] = hash;
+            ids[size] = id;
+            size ++;
+            if (2 * size > slots.length) {
+                // Keeps the table at most half full, rehashing every entry.
+                slots = new int[2 * slots.length];
+                for (int entry = 0; entry < size; entry ++) {
+                    insert(entry);
+                }
+            } else {
+                insert(size - 1);
+            }
+        }
+
+        private void insert(int entry) {
+            int mask = slots.length - 1;
+            int slot = mix(hashes[entry]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer chunk, int begin, int end) {
+            if (key.length != end - begin) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i ++) {
+                if (key[i] != chunk.get(begin + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -10,4 +10,29 @@ public interface UnweightedGraph extends Graph {
      * @throws IndexOutOfBoundsException if either vertex ID is out of bounds.
      */
     public boolean addEdge(int begin, int end);
+    
+    /** Removes the edge between two vertices.
+     * In an undirected graph, this has the same effect as removeEdge(end, begin).
+     * @return false if the edge was not in the graph.
+     * @throws IndexOutOfBoundsException if either vertex ID is out of bounds.
+     */
+    public boolean removeEdge(int begin, int end);
+    
+    /** Removes a vertex and all of its edges.  The IDs of the other vertices
+     * do not change, and numVerts() still counts the removed one, which has no
+     * edges from then on.
+     * @return false if the vertex was already removed.
+     * @throws IndexOutOfBoundsException if the vertex ID is out of bounds.
+     */
+    public boolean removeVertex(int v);
+    
+    /** Adds a batch of unweighted edges: the i-th edge runs from begins[i] to
+     * ends[i], for i less than count.  The result is the same as calling
+     * addEdge on each, but an implementation may sort and merge the whole
+     * batch at once, which is much faster for large batches.
+     * @return the number of edges that were not already in the graph.
+     * @throws IndexOutOfBoundsException if any vertex ID is out of bounds, in
+     *     which case no edges are added.
+     */
+    public int addEdges(int[] begins, int[] ends, int count);
 }
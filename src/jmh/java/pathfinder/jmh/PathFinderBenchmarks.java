@@ -0,0 +1,296 @@
+package pathfinder.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* JMH benchmarks for the costs that dominate a PathFinder: loading the node and
+* edge files, shortest-path queries between random pairs of nodes, with and
+* without an intermediate node, in each search mode, and iterating over the
+* neighbors of every vertex of the list and CSR graphs.
+*
+* Query benchmarks report throughput and, from sampled latencies, the
+* percentiles; run with -prof gc for the allocation rate as well. Random nodes
+* are drawn through getRandomNode with a fixed seed, so every run asks the same
+* queries. A PathFinder is not thread-safe, so the query benchmarks must run on
+* one thread, which is the default.
+*
+* Build with "mvn package", then run from the repository root, where the data
+* files are:
+* <pre>
+*   java -jar target/benchmarks.jar -prof gc
+*   java -jar target/benchmarks.jar 'path$' -p searchMode=BIDIRECTIONAL
+* </pre>
+*
+* The program's classes are in the default package, which a named package such
+* as this one cannot import, so they are called through method handles looked up
+* once by name. Each handle is a static final constant, which the JIT compiler
+* inlines like a direct call.
+*
+* @author Yitong Chen
+* @author Anton Nagy
+*/
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PathFinderBenchmarks {
+    // The seed for choosing random nodes, as in PathFinderBenchmark.
+    private static final long SEED = 201;
+
+    private static final Class<?> PATH_FINDER = type("PathFinder");
+    private static final Class<?> SEARCH_MODE = type("PathFinder$SearchMode");
+    private static final Class<?> GRAPH = type("Graph");
+
+    // (String, String) -> PathFinder, loading the two files.
+    private static final MethodHandle NEW_PATH_FINDER =
+        constructor(PATH_FINDER, String.class, String.class);
+    private static final MethodHandle SET_SEARCH_MODE =
+        method(PATH_FINDER, "setSearchMode", void.class, SEARCH_MODE);
+    private static final MethodHandle SET_RANDOM_SEED =
+        method(PATH_FINDER, "setRandomSeed", void.class, long.class);
+    private static final MethodHandle GET_RANDOM_NODE =
+        method(PATH_FINDER, "getRandomNode", String.class);
+    private static final MethodHandle GET_SHORTEST_PATH =
+        method(PATH_FINDER, "getShortestPath", List.class, String.class, String.class);
+    private static final MethodHandle GET_SHORTEST_PATH_LENGTH =
+        method(PATH_FINDER, "getShortestPathLength", int.class, String.class, String.class);
+    private static final MethodHandle GET_SHORTEST_PATH_VIA =
+        method(PATH_FINDER, "getShortestPath", List.class, String.class, String.class,
+               String.class);
+
+    private static final MethodHandle NUM_VERTS = method(GRAPH, "numVerts", int.class);
+    private static final MethodHandle GET_DEGREE = method(GRAPH, "getDegree", int.class, int.class);
+    private static final MethodHandle GET_NEIGHBORS =
+        method(GRAPH, "getNeighbors", Iterable.class, int.class);
+    private static final MethodHandle COPY_NEIGHBORS =
+        method(GRAPH, "copyNeighbors", int.class, int.class, int[].class);
+
+    /**
+    * The names of the node and edge files, relative to the working directory.
+    */
+    @State(Scope.Benchmark)
+    public static class Files {
+        @Param("articles.tsv")
+        public String nodeFile;
+
+        @Param("links.tsv")
+        public String edgeFile;
+    }
+
+    /**
+    * A PathFinder loaded from the files, in one search mode, and a fixed list of
+    * random node triples to query it with.
+    */
+    @State(Scope.Benchmark)
+    public static class Queries {
+        @Param({"BREADTH_FIRST", "BIDIRECTIONAL", "DIRECTION_OPTIMIZING", "LANDMARK_ASTAR"})
+        public String searchMode;
+
+        @Param("1000")
+        public int triples;
+
+        Object finder;
+        String[][] nodes;
+        private int next;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public void setUp(Files files) throws Throwable {
+            finder = NEW_PATH_FINDER.invoke(files.nodeFile, files.edgeFile);
+            SET_SEARCH_MODE.invoke(finder, Enum.valueOf((Class) SEARCH_MODE, searchMode));
+            SET_RANDOM_SEED.invoke(finder, SEED);
+            nodes = new String[triples][];
+            for (int i = 0; i < triples; i ++) {
+                nodes[i] = new String[] {(String) GET_RANDOM_NODE.invoke(finder),
+                                         (String) GET_RANDOM_NODE.invoke(finder),
+                                         (String) GET_RANDOM_NODE.invoke(finder)};
+            }
+            next = 0;
+        }
+
+        // Returns the next triple, cycling through the list.
+        String[] next() {
+            String[] triple = nodes[next];
+            next = next + 1 == nodes.length ? 0 : next + 1;
+            return triple;
+        }
+    }
+
+    /**
+    * The graph read from the files, in one representation: the list graph
+    * PathFinder loads into, or a CSR copy of it.
+    */
+    @State(Scope.Benchmark)
+    public static class Neighbors {
+        @Param({"LIST", "CSR"})
+        public String graphKind;
+
+        Object graph;
+        int numVerts;
+        int[] buffer;
+
+        @Setup(Level.Trial)
+        public void setUp(Files files) throws Throwable {
+            Class<?> labelDictionary = type("LabelDictionary");
+            Class<?> loader = type("TsvGraphLoader");
+            Class<?> edgesType = type("TsvGraphLoader$Edges");
+            Class<?> mysteryType = type("MysteryUnweightedGraphImplementation");
+            List<?> names = (List<?>) MethodHandles.publicLookup()
+                .findStatic(loader, "readArticles", MethodType.methodType(List.class, String.class))
+                .invoke(files.nodeFile);
+            Object labels = constructor(labelDictionary, List.class).invoke(names);
+            Object edges = MethodHandles.publicLookup()
+                .findStatic(loader, "readLinks",
+                            MethodType.methodType(edgesType, String.class, labelDictionary))
+                .invoke(files.edgeFile, labels);
+            Object mystery = constructor(mysteryType).invoke();
+            MethodHandle addVertex = method(mysteryType, "addVertex", int.class);
+            for (int i = 0; i < names.size(); i ++) {
+                addVertex.invoke(mystery);
+            }
+            method(mysteryType, "addEdges", int.class, int[].class, int[].class, int.class)
+                .invoke(mystery, edgesType.getField("begins").get(edges),
+                        edgesType.getField("ends").get(edges),
+                        edgesType.getField("count").getInt(edges));
+            graph = graphKind.equals("CSR")
+                ? constructor(type("CsrUnweightedGraph"), GRAPH).invoke(mystery) : mystery;
+            numVerts = (int) NUM_VERTS.invokeExact(graph);
+            int maxDegree = 0;
+            for (int v = 0; v < numVerts; v ++) {
+                maxDegree = Math.max(maxDegree, (int) GET_DEGREE.invokeExact(graph, v));
+            }
+            buffer = new int[maxDegree];
+        }
+    }
+
+    /**
+    * Loads the node and edge files into a new PathFinder.
+    */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object loadTsv(Files files) throws Throwable {
+        return NEW_PATH_FINDER.invoke(files.nodeFile, files.edgeFile);
+    }
+
+    /**
+    * Finds a shortest path between the next random pair.
+    */
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<?> path(Queries queries) throws Throwable {
+        String[] triple = queries.next();
+        return (List<?>) GET_SHORTEST_PATH.invokeExact(queries.finder, triple[0], triple[1]);
+    }
+
+    /**
+    * Finds the length of a shortest path between the next random pair.
+    */
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int pathLength(Queries queries) throws Throwable {
+        String[] triple = queries.next();
+        return (int) GET_SHORTEST_PATH_LENGTH.invokeExact(queries.finder, triple[0], triple[1]);
+    }
+
+    /**
+    * Finds a shortest path between the next random pair through a third random
+    * node.
+    */
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<?> pathVia(Queries queries) throws Throwable {
+        String[] triple = queries.next();
+        return (List<?>) GET_SHORTEST_PATH_VIA.invokeExact(queries.finder, triple[0], triple[2],
+                                                           triple[1]);
+    }
+
+    /**
+    * Visits the neighbors of every vertex through getNeighbors, boxing each one.
+    */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long neighborsIterable(Neighbors neighbors) throws Throwable {
+        long sum = 0;
+        for (int v = 0; v < neighbors.numVerts; v ++) {
+            Iterable<?> all = (Iterable<?>) GET_NEIGHBORS.invokeExact(neighbors.graph, v);
+            for (Object u : all) {
+                sum += (Integer) u;
+            }
+        }
+        return sum;
+    }
+
+    /**
+    * Visits the neighbors of every vertex through copyNeighbors, into one
+    * reused array.
+    */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long neighborsCopy(Neighbors neighbors) throws Throwable {
+        long sum = 0;
+        int[] buffer = neighbors.buffer;
+        for (int v = 0; v < neighbors.numVerts; v ++) {
+            int d = (int) COPY_NEIGHBORS.invokeExact(neighbors.graph, v, buffer);
+            for (int i = 0; i < d; i ++) {
+                sum += buffer[i];
+            }
+        }
+        return sum;
+    }
+
+    // Returns the class with the given name, which the build puts on the class
+    // path next to this one.
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Missing program class " + name, e);
+        }
+    }
+
+    // Returns a handle on a public constructor, typed to return Object.
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().findConstructor(owner,
+                MethodType.methodType(void.class, parameters));
+            return handle.asType(handle.type().changeReturnType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing constructor of " + owner.getName(), e);
+        }
+    }
+
+    // Returns a handle on a public instance method, typed to take its receiver
+    // as an Object.
+    private static MethodHandle method(Class<?> owner, String name, Class<?> returnType,
+                                       Class<?>... parameters) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().findVirtual(owner, name,
+                MethodType.methodType(returnType, parameters));
+            return handle.asType(handle.type().changeParameterType(0, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing method " + owner.getName() + "." + name, e);
+        }
+    }
+}